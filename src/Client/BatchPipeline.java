@@ -0,0 +1,263 @@
+package Client;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streaming pipeline that reads a batches file and sends its batches to the server.
+ * <p>
+ * A reader thread memory-maps the file window by window and cuts it into chunks that end on
+ * a batch terminator line ("F"). Chunks are parsed in parallel, then handed over in file
+ * order through a bounded queue to one or more sender threads. With a single sender the
+ * batches reach the server in file order.
+ */
+public class BatchPipeline {
+    private final GSPClient client;
+    private final int senders;
+    private final long minIntervalMillis;       // Minimum time between two sends of the same sender
+    private final int chunkSize;                // Approximate number of bytes per parse task
+    private final AtomicInteger batchCount = new AtomicInteger(0);
+    private final AtomicLong totalResponseTime = new AtomicLong(0);
+
+    private static final long WINDOW_SIZE = 256L << 20;                 // Bytes mapped at a time
+    private static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+    private static final List<String[]> END = new ArrayList<>();        // Marks the end of the batch queue
+    private static final List<List<String[]>> END_OF_FILE = new ArrayList<>();  // Marks the end of the parsed chunks
+
+    public BatchPipeline(GSPClient client, int senders) {
+        this(client, senders, 0, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param client The connected client used to send batches
+     * @param senders The number of concurrent sender threads
+     * @param minIntervalMillis The minimum time between two sends of the same sender, 0 for no pacing
+     * @param chunkSize The approximate number of bytes per parse task
+     */
+    public BatchPipeline(GSPClient client, int senders, long minIntervalMillis, int chunkSize) {
+        this.client = client;
+        this.senders = Math.max(1, senders);
+        this.minIntervalMillis = minIntervalMillis;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Read, parse and send every batch in the file, returning once all batches were sent.
+     */
+    public void run(Path batchesFile) throws IOException, InterruptedException {
+        int parsers = Runtime.getRuntime().availableProcessors();
+        ExecutorService parserPool = Executors.newFixedThreadPool(parsers);
+        BlockingQueue<Future<List<List<String[]>>>> parsed = new ArrayBlockingQueue<>(parsers * 2);
+        BlockingQueue<List<String[]>> batches = new ArrayBlockingQueue<>(senders * 4);
+
+        // Hands parsed chunks to the senders in file order
+        Thread dispatcher = new Thread(() -> {
+            try {
+                while (true) {
+                    List<List<String[]>> chunkBatches;
+                    try {
+                        chunkBatches = parsed.take().get();
+                    } catch (ExecutionException e) {
+                        System.err.println("Batch parsing failed (skipping chunk): " + e.getCause().getMessage());
+                        continue;
+                    }
+                    if (chunkBatches == END_OF_FILE)
+                        break;
+                    for (List<String[]> batch : chunkBatches)
+                        batches.put(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // Tell every sender to stop once it has drained the queue
+            for (int i = 0; i < senders; i++) {
+                try {
+                    batches.put(END);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "batch-dispatcher");
+
+        List<Thread> senderThreads = new ArrayList<>();
+        for (int i = 0; i < senders; i++)
+            senderThreads.add(new Thread(() -> send(batches), "batch-sender-" + (i + 1)));
+
+        dispatcher.start();
+        senderThreads.forEach(Thread::start);
+        try (FileChannel channel = FileChannel.open(batchesFile, StandardOpenOption.READ)) {
+            read(channel, parserPool, parsed);
+        } finally {
+            parsed.put(CompletableFuture.completedFuture(END_OF_FILE));
+            parserPool.shutdown();
+            dispatcher.join();
+            for (Thread sender : senderThreads)
+                sender.join();
+        }
+    }
+
+    /**
+     * Reader stage: map the file window by window and submit one parse task per chunk.
+     * A chunk always ends after a batch terminator unless it reaches the end of the file,
+     * so batches never straddle two chunks (except batches larger than a whole window).
+     */
+    private void read(FileChannel channel, ExecutorService parserPool,
+                      BlockingQueue<Future<List<List<String[]>>>> parsed) throws IOException, InterruptedException {
+        long fileSize = channel.size();
+        long windowStart = 0;
+
+        while (windowStart < fileSize) {
+            long windowLength = Math.min(WINDOW_SIZE, fileSize - windowStart);
+            boolean lastWindow = windowStart + windowLength == fileSize;
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+
+            int chunkStart = 0;
+            int limit = (int) windowLength;
+            while (chunkStart < limit) {
+                int chunkEnd = batchEnd(window, Math.min(chunkStart + chunkSize, limit), limit);
+                if (chunkEnd == -1 && !lastWindow) {
+                    // No terminator left in this window: leave the tail for the next window,
+                    // unless the window holds no terminator at all, then cut at the last full line
+                    if (chunkStart > 0)
+                        break;
+                    chunkEnd = limit;
+                    while (chunkEnd > 0 && window.get(chunkEnd - 1) != '\n')
+                        chunkEnd--;
+                    if (chunkEnd == 0)
+                        chunkEnd = limit;
+                } else if (chunkEnd == -1) {
+                    chunkEnd = limit;
+                }
+
+                byte[] chunk = new byte[chunkEnd - chunkStart];
+                window.get(chunkStart, chunk);
+                parsed.put(parserPool.submit(() -> parse(chunk)));
+                chunkStart = chunkEnd;
+            }
+            windowStart += chunkStart;
+        }
+    }
+
+    /**
+     * Find the end of the first batch terminator line at or after position from.
+     *
+     * @return The position just past the terminator line, or -1 if there is none before limit
+     */
+    private static int batchEnd(MappedByteBuffer window, int from, int limit) {
+        // Move back to the start of the line containing from
+        int lineStart = from;
+        while (lineStart > 0 && window.get(lineStart - 1) != '\n')
+            lineStart--;
+
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && window.get(lineEnd) != '\n')
+                lineEnd++;
+            if (lineEnd == limit)
+                return -1; // Incomplete line
+
+            if (isTerminator(window, lineStart, lineEnd))
+                return lineEnd + 1;
+            lineStart = lineEnd + 1;
+        }
+        return -1;
+    }
+
+    private static boolean isTerminator(MappedByteBuffer window, int lineStart, int lineEnd) {
+        int count = 0;
+        for (int i = lineStart; i < lineEnd; i++) {
+            byte b = window.get(i);
+            if (b == 'F' || b == 'f')
+                count++;
+            else if (!Character.isWhitespace(b))
+                return false;
+        }
+        return count == 1;
+    }
+
+    /**
+     * Parser stage: split a chunk into batches of [operation, sourceNode, targetNode] operations.
+     * Lines that do not have exactly three fields are skipped.
+     */
+    static List<List<String[]>> parse(byte[] chunk) {
+        List<List<String[]>> batches = new ArrayList<>();
+        List<String[]> currentBatch = new ArrayList<>();
+        String[] fields = new String[4];
+        int position = 0;
+
+        while (position < chunk.length) {
+            int count = 0;
+            // Tokenize one line
+            while (position < chunk.length && chunk[position] != '\n') {
+                while (position < chunk.length && chunk[position] != '\n' && isBlank(chunk[position]))
+                    position++;
+                int tokenStart = position;
+                while (position < chunk.length && chunk[position] != '\n' && !isBlank(chunk[position]))
+                    position++;
+                if (position > tokenStart && count < fields.length)
+                    fields[count++] = new String(chunk, tokenStart, position - tokenStart, StandardCharsets.US_ASCII);
+                else if (position > tokenStart)
+                    count++;
+            }
+            position++;
+
+            if (count == 1 && fields[0].equalsIgnoreCase("F")) {
+                batches.add(currentBatch);
+                currentBatch = new ArrayList<>();
+            } else if (count == 3) {
+                currentBatch.add(new String[]{fields[0], fields[1], fields[2]});
+            }
+        }
+
+        // Remaining operations at the end of the file (the batch didn't end with 'F')
+        if (!currentBatch.isEmpty())
+            batches.add(currentBatch);
+        return batches;
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    /**
+     * Sender stage: send batches until the end marker, pacing sends if an interval is set.
+     */
+    private void send(BlockingQueue<List<String[]>> batches) {
+        try {
+            long lastSend = 0;
+            List<String[]> batch;
+            while ((batch = batches.take()) != END) {
+                int i = batchCount.getAndIncrement();
+                if (i % 100 == 0)
+                    System.out.println("Processing batch #" + i + " of " + batch.size() + " operations...");
+
+                long wait = lastSend + minIntervalMillis - System.currentTimeMillis();
+                if (wait > 0)
+                    Thread.sleep(wait);
+
+                lastSend = System.currentTimeMillis();
+                client.sendBatch(batch);
+                totalResponseTime.addAndGet(System.currentTimeMillis() - lastSend);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getBatchCount() {
+        return batchCount.get();
+    }
+
+    public float getAverageResponseTime() {
+        return (float) totalResponseTime.get() / batchCount.get();
+    }
+}
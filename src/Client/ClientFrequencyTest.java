@@ -1,8 +1,7 @@
 package Client;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.file.Paths;
 import java.util.Properties;
 
 public class ClientFrequencyTest {
@@ -35,63 +34,13 @@ public class ClientFrequencyTest {
 
             System.out.println("Client " + clientId + " connected and ready to process batches.");
 
-            // Read operations from file
-            BufferedReader reader = new BufferedReader(new FileReader(batchesFile));
-            String line;
-            List<String[]> currentBatch = new ArrayList<>();
-
+            // Stream operations from file, sending one batch every 1/frequency seconds
             int frequency = 5;
             long tsMillis = (long) (1.0f / frequency * 1000.0f);
+            BatchPipeline pipeline = new BatchPipeline(client, 1, tsMillis, 1 << 20);
+            pipeline.run(Paths.get(batchesFile));
 
-            long millis = 0l;
-            int i = 0;
-            long totalResponseTime = 0;
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty())
-                    continue; // Skip empty lines
-                
-                if (line.equalsIgnoreCase("F")) {
-                    // Process complete batch
-                    if (i % 100 == 0)
-                        System.out.println("Processing batch #" + i + " of " + currentBatch.size() + " operations...");
-
-                    i++;
-
-                    millis = System.currentTimeMillis() - millis;
-                    if (tsMillis - millis > 0l) {
-                        // System.out.println("Sleeping for " + String.valueOf(tsMillis - millis) + " ms");
-                        Thread.sleep(tsMillis - millis);
-                    }
-                    
-                    millis = System.currentTimeMillis();
-                    long responseTime = System.currentTimeMillis();
-                    client.sendBatch(currentBatch);
-                    totalResponseTime += System.currentTimeMillis() - responseTime;
-
-                    // millis = System.currentTimeMillis();
-
-                    currentBatch.clear();
-                    // System.out.println("Ready for new batch.");
-                    continue;
-                }
-
-                String[] parts = line.trim().split("\\s+");
-                if (parts.length == 3) {
-                    currentBatch.add(parts);
-                    // System.out.println("Added operation to batch: " + line);
-                } else {
-                    // System.out.println("Invalid operation format (skipping): " + line);
-                }
-            }
-
-            // Process any remaining operations in the last batch (if the batch didn't end with 'F')
-            if (!currentBatch.isEmpty()) {
-                System.out.println("Processing final batch of " + currentBatch.size() + " operations...");
-                client.sendBatch(currentBatch);
-            }
-
-            System.out.println("Average response time: " + (float)totalResponseTime / i);
+            System.out.println("Average response time: " + pipeline.getAverageResponseTime());
 
             System.out.println("Finished processing all batches. Client exiting...");
         } catch (NumberFormatException e) {
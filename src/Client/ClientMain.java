@@ -1,10 +1,9 @@
 package Client;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Properties;
-import java.util.Random;
 
 /**
  * ClientMain class for running a GSP Client
@@ -25,6 +24,12 @@ public class ClientMain {
         try (InputStream input = new FileInputStream(propertiesFile)) {
             prop.load(input);
 
+            // GSP.* system properties override the file, so one file can serve several clients
+            for (String name : System.getProperties().stringPropertyNames()) {
+                if (name.startsWith("GSP."))
+                    prop.setProperty(name, System.getProperty(name));
+            }
+
             // Server configuration
             String serverAddress = prop.getProperty("GSP.server");
             int rmiRegistryPort = Integer.parseInt(prop.getProperty("GSP.rmiRegistry.port"));
@@ -37,52 +42,25 @@ public class ClientMain {
             GSPClient client = new GSPClient(clientId);
             client.connectToServer(serverAddress, rmiRegistryPort);
 
-            System.out.println("Client " + clientId + " connected and ready to process batches.");
-
-            // Read operations from file
-            BufferedReader reader = new BufferedReader(new FileReader(batchesFile));
-            String line;
-            List<String[]> currentBatch = new ArrayList<>();
-            Random random = new Random();
-            int i = 0;
-            long totalResponseTime = 0;
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty())
-                    continue; // Skip empty lines
-
-                if (line.equalsIgnoreCase("F")) {
-                    // Process complete batch
-                    if (i % 100 == 0)
-                        System.out.println("Processing batch #" + i + " of " + currentBatch.size() + " operations...");
-                    i++;
+            // Optional read replicas for query-only batches
+            String replicas = prop.getProperty("GSP.replicas", "").trim();
+            if (!replicas.isEmpty())
+                client.connectToReplicas(Arrays.asList(replicas.split(",")),
+                        Boolean.parseBoolean(prop.getProperty("GSP.client.readYourWrites", "true")));
 
-                    long responseTime = System.currentTimeMillis();
-                    client.sendBatch(currentBatch);
-                    totalResponseTime += System.currentTimeMillis() - responseTime;
+            // Optional near cache of query distances
+            int cacheSize = Integer.parseInt(prop.getProperty("GSP.client.cache.size", "0"));
+            if (cacheSize > 0)
+                client.enableNearCache(cacheSize, Long.parseLong(prop.getProperty("GSP.client.cache.ttl", "60000")));
 
-                    currentBatch.clear();
-                    // Thread.sleep(random.nextInt(9000) + 1000); // Simulate network delay
-                    // System.out.println("Ready for new batch.");
-                    continue;
-                }
-
-                String[] parts = line.trim().split("\\s+");
-                if (parts.length == 3) {
-                    currentBatch.add(parts);
-                    // System.out.println("Added operation to batch: " + line);
-                } else {
-                    // System.out.println("Invalid operation format (skipping): " + line);
-                }
-            }
+            System.out.println("Client " + clientId + " connected and ready to process batches.");
 
-            // Process any remaining operations in the last batch (if the batch didn't end with 'F')
-            if (!currentBatch.isEmpty()) {
-                System.out.println("Processing final batch of " + currentBatch.size() + " operations...");
-                client.sendBatch(currentBatch);
-            }
+            // Stream operations from file through the parser and sender threads
+            int senders = Integer.parseInt(prop.getProperty("GSP.client.senders", "1"));
+            BatchPipeline pipeline = new BatchPipeline(client, senders);
+            pipeline.run(Paths.get(batchesFile));
 
-            System.out.println("Average response time: " + (float)totalResponseTime / i);
+            System.out.println("Average response time: " + pipeline.getAverageResponseTime());
 
             System.out.println("Finished processing all batches. Client exiting...");
         } catch (NumberFormatException e) {
@@ -1,6 +1,9 @@
 package Client;
 
+import Server.ChangeBatch;
+import Server.DistancePage;
 import Server.GSPRemote;
+import Server.VersionedResult;
 import java.rmi.*;
 import java.util.*;
 import java.io.*;
@@ -9,6 +12,17 @@ public class GSPClient {
     private GSPRemote serverStub;
     private final String clientId;
     private final String logFilePath;
+    private NearCache nearCache;
+    private volatile long subscriberId;
+    private Thread cachePoller;
+    private final List<GSPRemote> replicaStubs = new ArrayList<>();
+    private int nextReplica;
+    private boolean readYourWrites;
+    private volatile long lastWriteVersion;     // Graph version returned for this client's latest write
+
+    private static final int MAX_POLLED_CHANGES = 4096;
+    private static final long POLL_TIMEOUT_MILLIS = 1000;
+    private static final int MAX_SINGLE_SOURCE_ATTEMPTS = 3;
 
     public GSPClient(String clientId) {
         this.clientId = clientId;
@@ -36,6 +50,185 @@ public class GSPClient {
         }
     }
 
+    /**
+     * Connect to read replicas. Query-only requests are spread over the replicas and
+     * everything else still goes to the primary server.
+     *
+     * @param replicaAddresses Replica addresses in the format host:rmiRegistryPort
+     * @param readYourWrites Whether queries must observe this client's earlier writes
+     */
+    public void connectToReplicas(List<String> replicaAddresses, boolean readYourWrites) {
+        this.readYourWrites = readYourWrites;
+        for (String address : replicaAddresses) {
+            try {
+                String serviceName = "rmi://" + address.trim() + "/GSPService";
+                replicaStubs.add((GSPRemote) Naming.lookup(serviceName));
+                log("Connected to replica at " + serviceName);
+                System.out.println("Connected to replica at " + serviceName);
+            } catch (Exception e) {
+                System.err.println("Replica connection error: " + e.getMessage());
+                log("Replica connection error: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Send a query-only batch to the next replica, falling back to the primary if the
+     * replica is unreachable or has not caught up with this client's writes in time.
+     */
+    private VersionedResult sendRead(List<String[]> operations) throws RemoteException {
+        GSPRemote replica = null;
+        synchronized (replicaStubs) {
+            if (!replicaStubs.isEmpty())
+                replica = replicaStubs.get(nextReplica++ % replicaStubs.size());
+        }
+
+        if (replica != null) {
+            try {
+                return replica.processBatchVersioned(operations, readYourWrites ? lastWriteVersion : 0);
+            } catch (RemoteException e) {
+                log("Replica read failed, using primary: " + e.getMessage());
+            }
+        }
+        return serverStub.processBatchVersioned(operations);
+    }
+
+    /**
+     * Send a batch with edge changes to the primary and remember the version it produced.
+     */
+    private VersionedResult sendWrite(List<String[]> operations) throws RemoteException {
+        VersionedResult result = serverStub.processBatchVersioned(operations);
+        synchronized (this) {
+            lastWriteVersion = Math.max(lastWriteVersion, result.getEndVersion());
+        }
+        return result;
+    }
+
+    private static boolean isReadOnly(List<String[]> operations) {
+        for (String[] operation : operations) {
+            if (operation[0].charAt(0) != 'Q')
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Enable the client-side distance cache. Cached pairs are watched through the server's
+     * change stream, and a background thread applies the server's distance updates.
+     */
+    public void enableNearCache(int maxEntries, long ttlMillis) {
+        if (serverStub == null) {
+            log("Not connected to server");
+            return;
+        }
+
+        try {
+            subscriberId = serverStub.subscribe();
+            nearCache = new NearCache(maxEntries, ttlMillis, serverStub.getGraphVersion());
+            cachePoller = new Thread(this::pollChanges, "near-cache-poller-" + clientId);
+            cachePoller.setDaemon(true);
+            cachePoller.start();
+            log("Near cache enabled (" + maxEntries + " entries, " + ttlMillis + "ms TTL)");
+        } catch (Exception e) {
+            nearCache = null;
+            log("Near cache setup failed: " + e.getMessage());
+        }
+    }
+
+    public void disableNearCache() {
+        if (nearCache == null)
+            return;
+
+        log("Near cache disabled (hit ratio " + nearCache.getHitRatio() + ")");
+        nearCache = null;
+        cachePoller.interrupt();
+        try {
+            serverStub.unsubscribe(subscriberId);
+        } catch (Exception e) {
+            log("Unsubscribe failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Keep the near cache in step with the server: update the watches, then long-poll for changes.
+     * If the change stream is lost, e.g. because the subscription expired, cached entries can no
+     * longer be kept correct, so the cache is emptied until a new subscription is in place.
+     */
+    private void pollChanges() {
+        NearCache cache = nearCache;
+        boolean subscribed = true;
+        while (cache != null && cache == nearCache) {
+            try {
+                if (!subscribed) {
+                    long version = serverStub.getGraphVersion();
+                    subscriberId = serverStub.subscribe();
+                    cache.reset(version);
+                    subscribed = true;
+                    log("Near cache resubscribed at version " + version);
+                }
+
+                List<List<int[]>> pending = cache.drainPending();
+                if (!pending.get(0).isEmpty()) {
+                    int[][] columns = toColumns(pending.get(0), 2);
+                    serverStub.unwatchDistances(subscriberId, columns[0], columns[1]);
+                }
+                if (!pending.get(1).isEmpty()) {
+                    int[][] columns = toColumns(pending.get(1), 3);
+                    serverStub.watchDistances(subscriberId, columns[0], columns[1], columns[2]);
+                }
+
+                long version = cache.getVersion();
+                ChangeBatch batch = serverStub.pollChanges(subscriberId, version, MAX_POLLED_CHANGES, POLL_TIMEOUT_MILLIS);
+                cache.apply(batch, version);
+                if (batch.isTruncated())
+                    log("Near cache resynchronized at version " + batch.getLastSequence());
+            } catch (Exception e) {
+                if (Thread.currentThread().isInterrupted())
+                    return;
+                log("Change polling failed, emptying near cache: " + e.getMessage());
+                cache.reset(-1);
+                if (subscribed) {
+                    try {
+                        serverStub.unsubscribe(subscriberId);
+                    } catch (Exception ue) {
+                        // The old subscription expires on its own
+                    }
+                    subscribed = false;
+                }
+                try {
+                    Thread.sleep(POLL_TIMEOUT_MILLIS);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static int[][] toColumns(List<int[]> rows, int width) {
+        int[][] columns = new int[width][rows.size()];
+        for (int i = 0; i < rows.size(); i++)
+            for (int j = 0; j < width; j++)
+                columns[j][i] = rows.get(i)[j];
+        return columns;
+    }
+
+    /**
+     * Cache the query results of a batch if no edge changed while it ran.
+     */
+    private void cacheResults(NearCache cache, List<String[]> operations, VersionedResult result) {
+        if (result.getStartVersion() != result.getEndVersion())
+            return;
+        if (operations.stream().filter(operation -> operation[0].charAt(0) == 'Q').count() != result.getResults().size())
+            return; // The server skipped a malformed operation, so results can't be matched to pairs
+
+        int i = 0;
+        for (String[] operation : operations) {
+            if (operation[0].charAt(0) == 'Q')
+                cache.put(Integer.parseInt(operation[1]), Integer.parseInt(operation[2]),
+                        result.getResults().get(i++), result.getEndVersion());
+        }
+    }
+
     public void sendQuery(int source, int target) {
         if (serverStub == null) {
             log("Not connected to server");
@@ -44,7 +237,23 @@ public class GSPClient {
 
         try {
             long startTime = System.currentTimeMillis();
-            int distance = serverStub.queryShortestPath(source, target);
+            int distance;
+            NearCache cache = nearCache;
+            Integer cached = cache != null ? cache.get(source, target) : null;
+            if (cached != null) {
+                distance = cached;
+            } else if (cache != null) {
+                List<String[]> operations = Collections.singletonList(
+                        new String[]{"Q", String.valueOf(source), String.valueOf(target)});
+                VersionedResult result = sendRead(operations);
+                cacheResults(cache, operations, result);
+                distance = result.getResults().get(0);
+            } else if (!replicaStubs.isEmpty()) {
+                distance = sendRead(Collections.singletonList(
+                        new String[]{"Q", String.valueOf(source), String.valueOf(target)})).getResults().get(0);
+            } else {
+                distance = serverStub.queryShortestPath(source, target);
+            }
             long endTime = System.currentTimeMillis();
 
             log("Query: " + source + "->" + target + " = " + distance +
@@ -58,6 +267,112 @@ public class GSPClient {
         }
     }
 
+    public List<int[]> sendPathQuery(int source, int target, int maxPaths) {
+        if (serverStub == null) {
+            log("Not connected to server");
+            return Collections.emptyList();
+        }
+
+        try {
+            long startTime = System.currentTimeMillis();
+            List<int[]> paths;
+            if (maxPaths == 1) {
+                int[] path = serverStub.queryPath(source, target);
+                paths = path.length == 0 ? Collections.emptyList() : Collections.singletonList(path);
+            } else {
+                paths = serverStub.queryShortestPaths(source, target, maxPaths);
+            }
+            long endTime = System.currentTimeMillis();
+
+            log("Path query: " + source + "->" + target + " = " + paths.size() + " path(s)" +
+                    " (took " + (endTime - startTime) + "ms)");
+            return paths;
+        } catch (Exception e) {
+            log("Path query failed: " + e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Fetch the distances from one node to every node reachable from it, page by page.
+     * Every page carries the graph version it was computed at. If the graph changes while paging,
+     * the fetch restarts from the first page, giving up after a few attempts on a busy graph.
+     *
+     * @return Two parallel arrays: [0] holds the reachable node IDs and [1] their distances, or null on failure
+     */
+    public int[][] sendSingleSource(int source, int pageSize) {
+        if (serverStub == null) {
+            log("Not connected to server");
+            return null;
+        }
+
+        try {
+            long startTime = System.currentTimeMillis();
+            pageSize = Math.max(1, Math.min(pageSize, GSPRemote.MAX_PAGE_SIZE));
+            for (int attempt = 1; attempt <= MAX_SINGLE_SOURCE_ATTEMPTS; attempt++) {
+                List<DistancePage> pages = new ArrayList<>();
+                int total = 0;
+                DistancePage page;
+                do {
+                    page = serverStub.querySingleSource(source, total, pageSize);
+                    if (!pages.isEmpty() && page.getVersion() != pages.get(0).getVersion())
+                        break;
+                    pages.add(page);
+                    total += page.size();
+                } while (page.size() == pageSize);
+
+                if (page.getVersion() != pages.get(0).getVersion()) {
+                    log("Graph changed during single source query, restarting (attempt " + attempt + ")");
+                    continue;
+                }
+
+                int[][] result = new int[2][total];
+                int position = 0;
+                for (DistancePage p : pages) {
+                    System.arraycopy(p.getNodes(), 0, result[0], position, p.size());
+                    System.arraycopy(p.getDistances(), 0, result[1], position, p.size());
+                    position += p.size();
+                }
+                long endTime = System.currentTimeMillis();
+
+                log("Single source query: " + source + " reached " + total + " nodes in " + pages.size() +
+                        " page(s) at version " + page.getVersion() + " (took " + (endTime - startTime) + "ms)");
+                return result;
+            }
+            log("Single source query failed: graph kept changing over " + MAX_SINGLE_SOURCE_ATTEMPTS + " attempts");
+            return null;
+        } catch (Exception e) {
+            log("Single source query failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public int[][] sendDistanceTable(int[] sources, int[] targets, int chunkSize) {
+        int[][] table = new int[sources.length][];
+        if (serverStub == null) {
+            log("Not connected to server");
+            return table;
+        }
+
+        try {
+            long startTime = System.currentTimeMillis();
+            // Request the table a few rows at a time to keep each response bounded
+            chunkSize = Math.max(1, Math.min(chunkSize, GSPRemote.MAX_TABLE_SOURCES));
+            for (int from = 0; from < sources.length; from += chunkSize) {
+                int[] chunk = Arrays.copyOfRange(sources, from, Math.min(from + chunkSize, sources.length));
+                int[][] rows = serverStub.queryDistanceTable(chunk, targets);
+                System.arraycopy(rows, 0, table, from, rows.length);
+            }
+            long endTime = System.currentTimeMillis();
+
+            log("Distance table: " + sources.length + "x" + targets.length +
+                    " (took " + (endTime - startTime) + "ms)");
+        } catch (Exception e) {
+            log("Distance table failed: " + e.getMessage());
+        }
+        return table;
+    }
+
     public void sendAddEdge(int source, int target) {
         if (serverStub == null) {
             log("Not connected to server");
@@ -67,6 +382,8 @@ public class GSPClient {
         try {
             long startTime = System.currentTimeMillis();
             serverStub.addEdge(source, target);
+            if (!replicaStubs.isEmpty())
+                recordWriteVersion();
             long endTime = System.currentTimeMillis();
 
             log("Added edge: " + source + "->" + target +
@@ -88,6 +405,8 @@ public class GSPClient {
         try {
             long startTime = System.currentTimeMillis();
             serverStub.deleteEdge(source, target);
+            if (!replicaStubs.isEmpty())
+                recordWriteVersion();
             long endTime = System.currentTimeMillis();
 
             log("Deleted edge: " + source + "->" + target +
@@ -107,7 +426,14 @@ public class GSPClient {
 
         try {
             long startTime = System.currentTimeMillis();
-            List<Integer> results = serverStub.processBatch(operations);
+            NearCache cache = nearCache;
+            List<Integer> results;
+            if (cache != null)
+                results = sendCachedBatch(cache, operations);
+            else if (!replicaStubs.isEmpty())
+                results = (isReadOnly(operations) ? sendRead(operations) : sendWrite(operations)).getResults();
+            else
+                results = serverStub.processBatch(operations);
             long endTime = System.currentTimeMillis();
 
             log("Processed batch with " + operations.size() + " operations" +
@@ -125,6 +451,54 @@ public class GSPClient {
         }
     }
 
+    /**
+     * Send a batch through the near cache. A batch of queries only sends the pairs that miss
+     * the cache, and skips the round-trip entirely when every pair hits. Batches with edge
+     * changes are sent as they are, since their queries must observe those changes.
+     */
+    private List<Integer> sendCachedBatch(NearCache cache, List<String[]> operations) throws RemoteException {
+        Integer[] cached = new Integer[operations.size()];
+        List<String[]> misses = new ArrayList<>();
+        for (int i = 0; i < operations.size(); i++) {
+            String[] operation = operations.get(i);
+            if (operation[0].charAt(0) != 'Q') {
+                VersionedResult result = sendWrite(operations);
+                cacheResults(cache, operations, result);
+                return result.getResults();
+            }
+            try {
+                cached[i] = cache.get(Integer.parseInt(operation[1]), Integer.parseInt(operation[2]));
+            } catch (NumberFormatException e) {
+                return serverStub.processBatch(operations);
+            }
+            if (cached[i] == null)
+                misses.add(operation);
+        }
+
+        List<Integer> missResults = Collections.emptyList();
+        if (!misses.isEmpty()) {
+            VersionedResult result = sendRead(misses);
+            cacheResults(cache, misses, result);
+            missResults = result.getResults();
+        }
+
+        List<Integer> results = new ArrayList<>(operations.size());
+        Iterator<Integer> missIterator = missResults.iterator();
+        for (Integer distance : cached)
+            results.add(distance != null ? distance : missIterator.next());
+        return results;
+    }
+
+    /**
+     * Remember the primary's version after a single edge change, for read-your-writes.
+     */
+    private void recordWriteVersion() throws RemoteException {
+        long version = serverStub.getGraphVersion();
+        synchronized (this) {
+            lastWriteVersion = Math.max(lastWriteVersion, version);
+        }
+    }
+
     private void log(String message) {
         try (PrintWriter writer = new PrintWriter(new FileWriter(logFilePath, true))) {
             writer.println("[" + new Date() + "]: " + message);
@@ -0,0 +1,164 @@
+package Client;
+
+import Server.ChangeBatch;
+import java.util.*;
+
+/**
+ * Client-side cache of query distances, bounded by size and entry age.
+ * Entries are kept correct by the server's change stream: every cached pair is
+ * registered as a distance watch, and the watch deltas reported by the server
+ * overwrite the cached distances.
+ */
+public class NearCache {
+    private final LinkedHashMap<Long, Entry> entries;   // Cached distances in access order
+    private final Map<Long, Integer> pendingWatches;    // Pairs to register with the server, with their cached distance
+    private final Set<Long> pendingUnwatches;           // Pairs to unregister from the server
+    private final int maxEntries;
+    private final long ttlMillis;
+    private long version;                               // Graph version the cached distances are valid at
+    private long hits;
+    private long misses;
+
+    private static class Entry {
+        int distance;
+        final long expiresAt;
+
+        Entry(int distance, long expiresAt) {
+            this.distance = distance;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public NearCache(int maxEntries, long ttlMillis, long version) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.version = version;
+        this.pendingWatches = new LinkedHashMap<>();
+        this.pendingUnwatches = new LinkedHashSet<>();
+        this.entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() <= NearCache.this.maxEntries)
+                    return false;
+                unwatch(eldest.getKey());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Look up a cached distance.
+     *
+     * @return The cached distance, or null if the pair is not cached or its entry expired
+     */
+    public synchronized Integer get(int source, int target) {
+        long key = pairKey(source, target);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt < System.currentTimeMillis()) {
+            entries.remove(key);
+            unwatch(key);
+            entry = null;
+        }
+
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.distance;
+    }
+
+    /**
+     * Cache a distance that the server computed at the given graph version.
+     * Distances from any other version are dropped, since they may already be stale.
+     */
+    public synchronized void put(int source, int target, int distance, long atVersion) {
+        if (atVersion != version)
+            return;
+        long key = pairKey(source, target);
+        if (entries.put(key, new Entry(distance, System.currentTimeMillis() + ttlMillis)) == null) {
+            // A pair evicted and cached again is still watched if its unwatch was not sent yet
+            if (!pendingUnwatches.remove(key))
+                pendingWatches.put(key, distance);
+        }
+    }
+
+    /**
+     * Stop watching a pair that left the cache. A watch that was never sent is simply dropped.
+     */
+    private void unwatch(long key) {
+        if (pendingWatches.remove(key) == null)
+            pendingUnwatches.add(key);
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Apply a change-stream batch polled after the given version.
+     * Watched pairs reported by the server get their new distance. On a truncated batch the
+     * server reports every watched pair, so any entry it did not report is dropped.
+     * Entries cached while the poll was in flight were not watched yet, so the server did not
+     * check them against the polled changes; they are dropped if the version moves on.
+     */
+    public synchronized void apply(ChangeBatch batch, long afterVersion) {
+        if (afterVersion != version)
+            return;
+
+        if (batch.getLastSequence() != version) {
+            entries.keySet().removeAll(pendingWatches.keySet());
+            pendingWatches.clear();
+        }
+
+        Set<Long> reported = new HashSet<>();
+        for (int[] watch : batch.getChangedWatches()) {
+            long key = pairKey(watch[0], watch[1]);
+            Entry entry = entries.get(key);
+            if (entry != null)
+                entry.distance = watch[2];
+            reported.add(key);
+        }
+        if (batch.isTruncated())
+            entries.keySet().retainAll(reported);
+
+        version = batch.getLastSequence();
+    }
+
+    /**
+     * Take the pairs whose watch still has to be changed on the server, all at once so that a
+     * pair is never both watched and unwatched. Unwatches must be sent before watches.
+     *
+     * @return [0] the pairs to unwatch, as [source, target], and [1] the pairs to watch, as [source, target, distance]
+     */
+    public synchronized List<List<int[]>> drainPending() {
+        List<int[]> unwatches = new ArrayList<>();
+        for (long key : pendingUnwatches)
+            unwatches.add(new int[]{(int) (key >> 32), (int) key});
+        List<int[]> watches = new ArrayList<>();
+        for (Map.Entry<Long, Integer> watch : pendingWatches.entrySet())
+            watches.add(new int[]{(int) (watch.getKey() >> 32), watch.getKey().intValue(), watch.getValue()});
+        pendingUnwatches.clear();
+        pendingWatches.clear();
+        return Arrays.asList(unwatches, watches);
+    }
+
+    /**
+     * Drop every entry and start over at the given version, e.g. after losing the change stream.
+     * With a version of -1 nothing is cached until the next reset.
+     */
+    public synchronized void reset(long version) {
+        entries.clear();
+        pendingWatches.clear();
+        pendingUnwatches.clear();
+        this.version = version;
+    }
+
+    public synchronized float getHitRatio() {
+        return hits + misses > 0 ? (float) hits / (hits + misses) : 0;
+    }
+
+    private static long pairKey(int source, int target) {
+        return ((long) source << 32) | (target & 0xffffffffL);
+    }
+}
@@ -0,0 +1,261 @@
+package Server;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PrimitiveIterator;
+
+/**
+ * Breadth-first search tree from one source node, kept in compact parallel int arrays.
+ * <p>
+ * Every node discovered by the search gets a slot, in discovery order, holding the node ID, its
+ * distance and the slot of its BFS parent. The slots double as the BFS queue, so the search stops
+ * as soon as the requested target is found and can later be resumed from where it stopped when
+ * another target from the same source is requested. A tree is only valid for the graph version
+ * it was built at. Its searching methods are synchronized, so concurrent queries share it safely.
+ * <p>
+ * With allParents set, the tree also records every parent on the previous BFS level, so that
+ * all shortest paths to the target can be enumerated. Such a tree answers a single target.
+ */
+class BfsTree {
+    private final int sourceNode;
+    private final long version;                 // Graph version the tree was built at
+    private int[] nodes;                        // Slot -> node ID, in discovery order
+    private int[] parents;                      // Slot -> slot of the BFS parent, -1 for the source
+    private int[] distances;                    // Slot -> distance from the source
+    private int size;                           // Number of discovered nodes
+    private int head;                           // Next slot to expand
+    private final NodeIndex index;              // Node ID -> slot
+    private int[] extraHeads;                   // Slot -> first extra parent entry, -1 if none (null unless allParents)
+    private int[] extraParents;                 // Extra parent entry -> parent slot
+    private int[] extraNext;                    // Extra parent entry -> next entry of the same slot, -1 at the end
+    private int extraCount;
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int START = -2;        // Enumeration cursor before the first (BFS) parent
+    private static final int END = -1;
+
+    BfsTree(int sourceNode, long version, boolean allParents) {
+        this.sourceNode = sourceNode;
+        this.version = version;
+        this.nodes = new int[INITIAL_CAPACITY];
+        this.parents = new int[INITIAL_CAPACITY];
+        this.distances = new int[INITIAL_CAPACITY];
+        this.index = new NodeIndex(INITIAL_CAPACITY);
+        if (allParents) {
+            this.extraHeads = new int[INITIAL_CAPACITY];
+            this.extraParents = new int[INITIAL_CAPACITY];
+            this.extraNext = new int[INITIAL_CAPACITY];
+        }
+        discover(sourceNode, -1, 0);
+    }
+
+    int getSourceNode() {return sourceNode;}
+
+    long getVersion() {return version;}
+
+    /**
+     * Number of nodes discovered so far.
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Find shortest paths to a target, extending the search only as far as needed.
+     * Must be called with the graph read lock held, at the tree's graph version.
+     *
+     * @param graph The graph storage
+     * @param targetNode The target node ID
+     * @param maxPaths The maximum number of paths to return, only 1 unless the tree records all parents
+     * @param event The event collecting the traversal's statistics
+     * @return Up to maxPaths shortest paths from source to target, or an empty list if no path exists
+     */
+    synchronized List<int[]> paths(GraphStore graph, int targetNode, int maxPaths, ServerEvents.BfsEvent event) {
+        int targetSlot = slotOf(targetNode);
+        while (head < size) {
+            // With all parents, every node on the level before the target must be expanded
+            if (targetSlot >= 0 && (extraHeads == null || distances[head] >= distances[targetSlot]))
+                break;
+            int found = expand(graph, head++, targetNode, event);
+            if (found >= 0)
+                targetSlot = found;
+        }
+
+        List<int[]> paths = new ArrayList<>();
+        if (targetSlot >= 0)
+            collectPaths(paths, targetSlot, extraHeads == null ? 1 : maxPaths);
+        return paths;
+    }
+
+    /**
+     * Find the distance to a target, extending the search only as far as needed.
+     * With a flight, the search also answers the flight's waiters, and keeps going until none is left.
+     * Must be called with the graph read lock held, at the tree's graph version.
+     *
+     * @param graph The graph storage
+     * @param targetNode The target node ID
+     * @param flight The flight whose waiters this search must also answer, or null
+     * @param event The event collecting the traversal's statistics
+     * @return The shortest path distance, or -1 if no path exists
+     */
+    synchronized int distance(GraphStore graph, int targetNode, SourceFlight flight, ServerEvents.BfsEvent event) {
+        int targetSlot = slotOf(targetNode);
+        while (head < size) {
+            if (targetSlot >= 0 && (flight == null || flight.tryClose()))
+                return distances[targetSlot];
+            if (flight != null)
+                flight.resolveReached(this::distanceOf);
+
+            int discovered = size;
+            int found = expand(graph, head++, targetNode, event);
+            if (found >= 0)
+                targetSlot = found;
+            if (flight != null && flight.hasWaiters()) {
+                for (int slot = discovered; slot < size; slot++)
+                    flight.reached(nodes[slot], distances[slot]);
+            }
+        }
+
+        // Every reachable node was visited: answer the remaining waiters
+        if (flight != null)
+            flight.close(this::distanceOf);
+        return targetSlot < 0 ? -1 : distances[targetSlot];
+    }
+
+    /**
+     * Get a page of the distances from the source, in BFS discovery order (so by increasing distance),
+     * extending the search only as far as the page needs.
+     * Must be called with the graph read lock held, at the tree's graph version.
+     *
+     * @param graph The graph storage
+     * @param offset The number of reachable nodes to skip
+     * @param limit The maximum number of nodes to return
+     * @param event The event collecting the traversal's statistics
+     * @return Two parallel arrays: [0] holds node IDs and [1] their distances, shorter than limit on the last page
+     */
+    synchronized int[][] distances(GraphStore graph, int offset, int limit, ServerEvents.BfsEvent event) {
+        long end = (long) offset + limit;
+        while (size < end && head < size)
+            expand(graph, head++, sourceNode, event);
+
+        int from = Math.min(offset, size);
+        int to = (int) Math.min(end, size);
+        return new int[][]{Arrays.copyOfRange(nodes, from, to), Arrays.copyOfRange(distances, from, to)};
+    }
+
+    /**
+     * Whether every node reachable from the source has been discovered.
+     */
+    synchronized boolean isComplete() {
+        return head == size;
+    }
+
+    /**
+     * Expand one slot, discovering its unvisited neighbours.
+     *
+     * @return The slot of the target if it was discovered, -1 otherwise
+     */
+    private int expand(GraphStore graph, int slot, int targetNode, ServerEvents.BfsEvent event) {
+        int node = nodes[slot];
+        int nextDistance = distances[slot] + 1;
+        int found = -1;
+        event.nodesVisited++;
+
+        for (PrimitiveIterator.OfInt neighbors = graph.neighbors(node); neighbors.hasNext(); ) {
+            int neighbor = neighbors.nextInt();
+            event.edgesScanned++;
+            int neighborSlot = slotOf(neighbor);
+            if (neighborSlot < 0) {
+                neighborSlot = discover(neighbor, slot, nextDistance);
+                if (neighbor == targetNode)
+                    found = neighborSlot;
+            } else if (extraHeads != null && distances[neighborSlot] == nextDistance) {
+                addExtraParent(neighborSlot, slot);
+            }
+        }
+        return found;
+    }
+
+    private int discover(int node, int parentSlot, int distance) {
+        if (size == nodes.length) {
+            int capacity = size * 2;
+            nodes = Arrays.copyOf(nodes, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            distances = Arrays.copyOf(distances, capacity);
+            if (extraHeads != null)
+                extraHeads = Arrays.copyOf(extraHeads, capacity);
+        }
+
+        int slot = size++;
+        nodes[slot] = node;
+        parents[slot] = parentSlot;
+        distances[slot] = distance;
+        if (extraHeads != null)
+            extraHeads[slot] = END;
+        index.add(node);
+        return slot;
+    }
+
+    private void addExtraParent(int slot, int parentSlot) {
+        if (extraCount == extraParents.length) {
+            extraParents = Arrays.copyOf(extraParents, extraCount * 2);
+            extraNext = Arrays.copyOf(extraNext, extraCount * 2);
+        }
+        extraParents[extraCount] = parentSlot;
+        extraNext[extraCount] = extraHeads[slot];
+        extraHeads[slot] = extraCount++;
+    }
+
+    /**
+     * Enumerate paths by walking parent links back from the target, depth first with an explicit
+     * stack, so that long paths do not exhaust the thread stack.
+     */
+    private void collectPaths(List<int[]> paths, int targetSlot, int maxPaths) {
+        int length = distances[targetSlot];
+        int[] pathSlots = new int[length + 1];
+        int[] cursors = new int[length + 1];   // Per position: the next parent of pathSlots[i] to try
+        pathSlots[length] = targetSlot;
+        cursors[length] = START;
+
+        int position = length;
+        while (position <= length && paths.size() < maxPaths) {
+            if (position == 0) {
+                int[] path = new int[length + 1];
+                for (int i = 0; i <= length; i++)
+                    path[i] = nodes[pathSlots[i]];
+                paths.add(path);
+                position++;
+                continue;
+            }
+
+            int parent = nextParent(pathSlots[position], cursors, position);
+            if (parent < 0) {
+                position++;
+                continue;
+            }
+            pathSlots[--position] = parent;
+            cursors[position] = START;
+        }
+    }
+
+    private int nextParent(int slot, int[] cursors, int position) {
+        int cursor = cursors[position];
+        if (cursor == START) {
+            cursors[position] = extraHeads == null ? END : extraHeads[slot];
+            return parents[slot];
+        }
+        if (cursor == END)
+            return -1;
+        cursors[position] = extraNext[cursor];
+        return extraParents[cursor];
+    }
+
+    private int slotOf(int node) {
+        return index.indexOf(node);
+    }
+
+    private int distanceOf(int node) {
+        int slot = slotOf(node);
+        return slot < 0 ? -1 : distances[slot];
+    }
+}
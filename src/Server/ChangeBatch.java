@@ -0,0 +1,30 @@
+package Server;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A batch of edge changes returned by a change-stream poll.
+ */
+public class ChangeBatch implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long lastSequence;            // Sequence number to resume polling from
+    private final boolean truncated;            // True if changes were dropped from the log before they could be read
+    private final List<EdgeChange> changes;     // Changes after the requested sequence, in order
+    private final List<int[]> changedWatches;   // Watched pairs whose distance changed, as [source, target, distance]
+
+    public ChangeBatch(long lastSequence, boolean truncated, List<EdgeChange> changes, List<int[]> changedWatches) {
+        this.lastSequence = lastSequence;
+        this.truncated = truncated;
+        this.changes = changes;
+        this.changedWatches = changedWatches;
+    }
+
+    public long getLastSequence() {return lastSequence;}
+
+    public boolean isTruncated() {return truncated;}
+
+    public List<EdgeChange> getChanges() {return changes;}
+
+    public List<int[]> getChangedWatches() {return changedWatches;}
+}
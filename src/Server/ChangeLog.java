@@ -0,0 +1,85 @@
+package Server;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded ring buffer of edge changes, numbered by a monotonically increasing sequence.
+ * Once the buffer is full the oldest changes are overwritten, and readers that fall
+ * behind are told so and must resynchronize.
+ */
+class ChangeLog {
+    private final char[] operations;
+    private final int[] sources;
+    private final int[] targets;
+    private long lastSequence;  // Sequence of the most recent change, 0 if none
+    private long baseSequence;  // Sequence the log was started or reset at; earlier changes are unavailable
+
+    ChangeLog(int capacity) {
+        this.operations = new char[capacity];
+        this.sources = new int[capacity];
+        this.targets = new int[capacity];
+        this.lastSequence = 0;
+        this.baseSequence = 0;
+    }
+
+    /**
+     * Drop every buffered change and continue numbering after the given sequence.
+     */
+    synchronized void reset(long sequence) {
+        lastSequence = sequence;
+        baseSequence = sequence;
+        notifyAll();
+    }
+
+    /**
+     * Append a change and wake up any waiting readers.
+     *
+     * @return The sequence number assigned to the change
+     */
+    synchronized long append(char operation, int sourceNode, int targetNode) {
+        int slot = (int) (lastSequence % operations.length);
+        operations[slot] = operation;
+        sources[slot] = sourceNode;
+        targets[slot] = targetNode;
+        lastSequence++;
+        notifyAll();
+        return lastSequence;
+    }
+
+    synchronized long lastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Check whether the changes following a sequence number are still in the buffer.
+     */
+    synchronized boolean isAvailable(long afterSequence) {
+        return afterSequence >= Math.max(baseSequence, lastSequence - operations.length) && afterSequence <= lastSequence;
+    }
+
+    /**
+     * Block until a change after the given sequence exists or the timeout elapses.
+     */
+    synchronized void awaitAfter(long afterSequence, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long remaining = timeoutMillis;
+        while (lastSequence <= afterSequence && remaining > 0) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Read up to maxChanges changes after the given sequence.
+     * The caller is expected to have checked {@link #isAvailable(long)} first.
+     */
+    synchronized List<EdgeChange> readAfter(long afterSequence, int maxChanges) {
+        List<EdgeChange> changes = new ArrayList<>();
+        long from = Math.max(afterSequence, lastSequence - operations.length);
+        for (long sequence = from + 1; sequence <= lastSequence && changes.size() < maxChanges; sequence++) {
+            int slot = (int) ((sequence - 1) % operations.length);
+            changes.add(new EdgeChange(sequence, operations[slot], sources[slot], targets[slot]));
+        }
+        return changes;
+    }
+}
@@ -0,0 +1,28 @@
+package Server;
+import java.io.Serializable;
+
+/**
+ * One page of a single-source distance query, together with the graph version it was computed at.
+ * Pages with the same version belong to the same BFS and can be joined into one consistent result.
+ */
+public class DistancePage implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int[] nodes;          // Reachable node IDs, by increasing distance
+    private final int[] distances;      // Distance of each node from the source
+    private final long version;         // Graph version of the BFS the page was cut from
+
+    public DistancePage(int[] nodes, int[] distances, long version) {
+        this.nodes = nodes;
+        this.distances = distances;
+        this.version = version;
+    }
+
+    public int[] getNodes() {return nodes;}
+
+    public int[] getDistances() {return distances;}
+
+    public long getVersion() {return version;}
+
+    public int size() {return nodes.length;}
+}
@@ -0,0 +1,34 @@
+package Server;
+import java.io.Serializable;
+
+/**
+ * A single edge mutation recorded in the server's change log.
+ */
+public class EdgeChange implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long sequence;    // Position of this change in the change log
+    private final char operation;   // 'A' for an added edge, 'D' for a deleted edge
+    private final int sourceNode;
+    private final int targetNode;
+
+    public EdgeChange(long sequence, char operation, int sourceNode, int targetNode) {
+        this.sequence = sequence;
+        this.operation = operation;
+        this.sourceNode = sourceNode;
+        this.targetNode = targetNode;
+    }
+
+    public long getSequence() {return sequence;}
+
+    public char getOperation() {return operation;}
+
+    public int getSourceNode() {return sourceNode;}
+
+    public int getTargetNode() {return targetNode;}
+
+    @Override
+    public String toString() {
+        return sequence + ": " + operation + " " + sourceNode + " " + targetNode;
+    }
+}
@@ -9,6 +9,9 @@ import java.util.List;
  */
 public interface GSPRemote extends Remote {
 
+    int MAX_PAGE_SIZE = 1 << 20;        // Largest page of a single source query
+    int MAX_TABLE_SOURCES = 1024;       // Most source rows of a distance table query
+
     /**
      * Query the shortest path distance between two nodes.
      *
@@ -19,6 +22,49 @@ public interface GSPRemote extends Remote {
      */
     int queryShortestPath(int sourceNode, int targetNode) throws RemoteException;
 
+    /**
+     * Query a shortest path between two nodes.
+     *
+     * @param sourceNode The source node ID
+     * @param targetNode The target node ID
+     * @return The node IDs along the path, from source to target inclusive, or an empty array if no path exists
+     * @throws RemoteException If a remote communication error occurs
+     */
+    int[] queryPath(int sourceNode, int targetNode) throws RemoteException;
+
+    /**
+     * Query several distinct shortest paths between two nodes.
+     *
+     * @param sourceNode The source node ID
+     * @param targetNode The target node ID
+     * @param maxPaths The maximum number of paths to return, or 0 for all shortest paths
+     * @return The shortest paths as node ID arrays, or an empty list if no path exists
+     * @throws RemoteException If a remote communication error occurs
+     */
+    List<int[]> queryShortestPaths(int sourceNode, int targetNode, int maxPaths) throws RemoteException;
+
+    /**
+     * Query one page of the distances from one node to every node reachable from it.
+     * Nodes are ordered by increasing distance; pages with the same version are consistent.
+     *
+     * @param sourceNode The source node ID
+     * @param offset The number of reachable nodes to skip
+     * @param limit The maximum number of nodes to return, at most {@link #MAX_PAGE_SIZE}
+     * @return The page and the graph version it was computed at, holding fewer than limit nodes once the last page is reached
+     * @throws RemoteException If a remote communication error occurs
+     */
+    DistancePage querySingleSource(int sourceNode, int offset, int limit) throws RemoteException;
+
+    /**
+     * Query the distances between many source and target nodes in one call.
+     *
+     * @param sourceNodes The source node IDs, at most {@link #MAX_TABLE_SOURCES}
+     * @param targetNodes The target node IDs
+     * @return One row per source, where row[i][j] is the distance from sourceNodes[i] to targetNodes[j], or -1 if no path exists
+     * @throws RemoteException If a remote communication error occurs
+     */
+    int[][] queryDistanceTable(int[] sourceNodes, int[] targetNodes) throws RemoteException;
+
     /**
      * Add an edge from source node to target node in the graph.
      *
@@ -44,6 +90,91 @@ public interface GSPRemote extends Remote {
      */
     List<Integer> processBatch(List<String[]> operations) throws RemoteException;
 
+    /**
+     * Process a batch of operations and report the graph versions before and after it.
+     *
+     * @param operations List of operations in the format: [operation, sourceNode, targetNode]
+     *                  where operation is 'Q', 'A', or 'D'
+     * @return The query results with the graph versions observed around the batch
+     */
+    VersionedResult processBatchVersioned(List<String[]> operations) throws RemoteException;
+
+    /**
+     * Process a batch of queries once the graph has reached a minimum version.
+     * Replicas use this to give clients read-your-writes: a client passes the version
+     * returned for its last write, and the replica waits briefly until it has caught up.
+     *
+     * @param operations List of operations in the format: [operation, sourceNode, targetNode]
+     * @param minVersion The lowest graph version the queries may run against
+     * @return The query results with the graph versions observed around the batch
+     * @throws RemoteException If the graph did not reach minVersion in time, or a replica received a write
+     */
+    VersionedResult processBatchVersioned(List<String[]> operations, long minVersion) throws RemoteException;
+
+    /**
+     * Get a full copy of the graph, used to bootstrap replicas.
+     *
+     * @return The graph at the current version
+     * @throws RemoteException If the initial graph is still loading
+     */
+    GraphSnapshot getSnapshot() throws RemoteException;
+
+    /**
+     * Get the current graph version, the sequence number of the latest edge change.
+     *
+     * @return The graph version, 0 if the graph has not changed since it was loaded
+     */
+    long getGraphVersion() throws RemoteException;
+
+    /**
+     * Register a change-stream subscriber that can watch distances between node pairs.
+     * Every call made with the subscriber ID renews its lease; a subscriber silent for about
+     * two minutes is dropped, and later calls with its ID fail so the client can subscribe again.
+     *
+     * @return The subscriber ID to pass to the watch and poll operations
+     */
+    long subscribe() throws RemoteException;
+
+    /**
+     * Remove a subscriber and all of its watches.
+     *
+     * @param subscriberId The subscriber ID returned by subscribe
+     */
+    void unsubscribe(long subscriberId) throws RemoteException;
+
+    /**
+     * Watch the distances between node pairs. Later polls report the pairs whose distance
+     * no longer matches the last distance known to the subscriber. A subscriber watches at most 65536 pairs.
+     *
+     * @param subscriberId The subscriber ID returned by subscribe
+     * @param sourceNodes The source node IDs
+     * @param targetNodes The target node IDs, parallel to sourceNodes
+     * @param knownDistances The distances currently known to the subscriber, parallel to sourceNodes
+     */
+    void watchDistances(long subscriberId, int[] sourceNodes, int[] targetNodes, int[] knownDistances) throws RemoteException;
+
+    /**
+     * Stop watching the distances between node pairs.
+     *
+     * @param subscriberId The subscriber ID returned by subscribe
+     * @param sourceNodes The source node IDs
+     * @param targetNodes The target node IDs, parallel to sourceNodes
+     */
+    void unwatchDistances(long subscriberId, int[] sourceNodes, int[] targetNodes) throws RemoteException;
+
+    /**
+     * Poll the edge change stream, waiting up to timeoutMillis for new changes.
+     * If the requested changes are no longer held by the server the batch is marked truncated,
+     * and the current distance of every watched pair is reported so the subscriber can resynchronize.
+     *
+     * @param subscriberId The subscriber ID returned by subscribe, or 0 to skip watch evaluation
+     * @param afterSequence The last sequence number already seen by the subscriber
+     * @param maxChanges The maximum number of changes to return
+     * @param timeoutMillis How long to wait for a change, 0 to return immediately, capped at 30 seconds
+     * @return The changes after afterSequence, plus any watched pairs whose distance changed
+     */
+    ChangeBatch pollChanges(long subscriberId, long afterSequence, int maxChanges, long timeoutMillis) throws RemoteException;
+
     /**
      * Get performance metrics from the server.
      *
@@ -6,7 +6,11 @@ import java.rmi.registry.*;
 import java.rmi.server.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -15,12 +19,34 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * Handles graph operations and shortest path queries.
  */
 public class GSPServer extends UnicastRemoteObject implements GSPRemote {
-    private final Map<Integer, Set<Integer>> graph;                 // Adjacency list representation of the graph
+    private final GraphStore graph;                                 // Adjacency list representation of the graph
     private final ReadWriteLock graphLock;                          // Lock for concurrent access to the graph
     private final AtomicInteger nodeCount;                          // Counter for total nodes in the graph
     private final ConcurrentHashMap<String, Integer> counts;        // Map to track counts of operations
     private final ConcurrentHashMap<String, Long> processingTimes;  // Map to track operation processing times
     private ConcurrentHashMap<Integer, ConcurrentHashMap<Integer, Integer>> cache;  // Map to track operation processing times
+    private final Map<Integer, BfsTree> bfsTrees;                   // Recently built BFS trees by source node, reused by path queries
+
+    private final ChangeLog changeLog;                              // Ring buffer of recent edge changes
+    private final ConcurrentHashMap<Long, Subscription> subscriptions; // Change-stream subscribers by ID
+    private final AtomicLong nextSubscriberId;
+    private final AtomicLong lastLeaseCheck = new AtomicLong(0);   // When expired subscriptions were last removed
+    private Map<Long, Integer> watchMemo = new ConcurrentHashMap<>(); // Watched pair distances at watchMemoVersion, shared by subscribers
+    private long watchMemoVersion = -1;                             // Guarded by the memo lock
+    private final Object watchMemoLock = new Object();
+    private final ConcurrentHashMap<Integer, SourceFlight> flights; // Running BFS traversals by source node
+    private final ServerMetrics metrics;                            // Live counters exposed over HTTP
+
+    private static final int MAX_SHORTEST_PATHS = 1024;            // Upper bound on paths returned for an "all paths" query
+    private static final int BFS_TREE_CACHE_SIZE = 16;             // Number of BFS trees kept for path queries
+    private static final int MAX_CACHED_TREE_NODES = 1 << 18;      // Larger BFS trees are not kept
+    private static final int CHANGE_LOG_CAPACITY = 1 << 16;        // Number of edge changes kept for subscribers
+    private static final long SUBSCRIPTION_LEASE_MILLIS = 120_000;  // Silent subscribers are dropped after this long
+    private static final long MAX_POLL_MILLIS = 30_000;            // Longest long-poll, well within the lease
+    private static final int MAX_WATCHES = 1 << 16;                // Most watched pairs per subscriber
+    private static final int REPLICATION_BATCH = 4096;             // Maximum changes pulled from the primary per poll
+    private static final long REPLICATION_POLL_MILLIS = 1000;      // Long-poll timeout when pulling from the primary
+    private static final long REPLICA_WAIT_MILLIS = 1000;          // How long a replica waits to reach a client's version
 
     private boolean useCache = false;
     private final String serverAddress;
@@ -29,6 +55,14 @@ public class GSPServer extends UnicastRemoteObject implements GSPRemote {
     private ServerSocket serverSocket;
     private boolean isRunning;
     private final String logFilePath;
+    private volatile boolean graphLoaded = false;                   // Whether the initial graph has been loaded
+    private volatile boolean replica = false;                       // Whether this server is a read-only replica
+    private Thread replicator;                                      // Pulls changes from the primary in replica mode
+    private volatile GraphLayout layout;                            // Reordered copy of the graph used by BFS, null if disabled
+    private volatile GraphLayout.Order layoutOrder;                 // Node order used when building the layout
+    private final AtomicBoolean layoutRebuilding = new AtomicBoolean(false);
+    private ExecutorService layoutExecutor;                         // Rebuilds the layout in the background
+    private final GraphLayout.ScratchPool layoutScratch = new GraphLayout.ScratchPool(Runtime.getRuntime().availableProcessors());    // BFS buffers borrowed by layout queries, kept across rebuilds
 
     /**
      * Constructor for the GSP Server.
@@ -39,16 +73,40 @@ public class GSPServer extends UnicastRemoteObject implements GSPRemote {
      * @throws RemoteException If a remote communication error occurs
      */
     public GSPServer(String serverAddress, int serverPort, int rmiRegistryPort) throws RemoteException {
+        this(serverAddress, serverPort, rmiRegistryPort, new HeapGraphStore());
+    }
+
+    /**
+     * Constructor for the GSP Server with a specific graph storage backend.
+     *
+     * @param serverAddress The server's IP address
+     * @param serverPort The server's port
+     * @param rmiRegistryPort The RMI registry port
+     * @param graph The storage backend holding the graph
+     * @throws RemoteException If a remote communication error occurs
+     */
+    GSPServer(String serverAddress, int serverPort, int rmiRegistryPort, GraphStore graph) throws RemoteException {
         super();
         this.serverAddress = serverAddress;
         this.serverPort = serverPort;
         this.rmiRegistryPort = rmiRegistryPort;
-        this.graph = new ConcurrentHashMap<>();
+        this.graph = graph;
         this.graphLock = new ReentrantReadWriteLock();
         this.nodeCount = new AtomicInteger(0);
         this.counts = new ConcurrentHashMap<>();
         this.processingTimes = new ConcurrentHashMap<>();
         this.cache = new ConcurrentHashMap<>();
+        this.bfsTrees = Collections.synchronizedMap(new LinkedHashMap<Integer, BfsTree>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, BfsTree> eldest) {
+                return size() > BFS_TREE_CACHE_SIZE;
+            }
+        });
+        this.changeLog = new ChangeLog(CHANGE_LOG_CAPACITY);
+        this.subscriptions = new ConcurrentHashMap<>();
+        this.nextSubscriberId = new AtomicLong(0);
+        this.flights = new ConcurrentHashMap<>();
+        this.metrics = new ServerMetrics();
         this.logFilePath = "server_log.txt";
         this.isRunning = false;
 
@@ -56,6 +114,7 @@ public class GSPServer extends UnicastRemoteObject implements GSPRemote {
         processingTimes.put("query", 0L);
         processingTimes.put("add", 0L);
         processingTimes.put("delete", 0L);
+        metrics.setSources(changeLog::lastSequence, nodeCount::get, counts);
 
         // Initialize the log file
         try (PrintWriter writer = new PrintWriter(new FileWriter(logFilePath))) {
@@ -104,6 +163,8 @@ public class GSPServer extends UnicastRemoteObject implements GSPRemote {
      */
     public void handleInitialGraph(String filePath) {
         long millis = System.currentTimeMillis();
+        ServerEvents.GraphLoadEvent event = new ServerEvents.GraphLoadEvent();
+        event.begin();
         try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
             log("Reading initial graph from file: " + filePath);
             String line;
@@ -128,6 +189,10 @@ public class GSPServer extends UnicastRemoteObject implements GSPRemote {
             millis = System.currentTimeMillis() - millis;
             System.out.println("Initial graph processing complete in " + String.valueOf(millis / 1000.0f) + " seconds");
 
+            graphLoaded = true;
+            event.source = filePath;
+            event.nodes = nodeCount.get();
+            event.commit();
             log("Initial graph processing complete. Ready for workload.");
         } catch (IOException e) {
             log("Error handling input: " + e.getMessage());
@@ -173,6 +238,7 @@ public class GSPServer extends UnicastRemoteObject implements GSPRemote {
      */
     @Override
     public int queryShortestPath(int sourceNode, int targetNode) throws RemoteException {
+        checkReadable();
         return queryShortestPathInternal(sourceNode, targetNode);
     }
 
@@ -182,6 +248,7 @@ public class GSPServer extends UnicastRemoteObject implements GSPRemote {
     private int queryShortestPathInternal(int sourceNode, int targetNode) {
         counts.put("query", counts.getOrDefault("query", 0) + 1);
         long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
         int result = -1;
 
         if(useCache){
@@ -197,11 +264,14 @@ public class GSPServer extends UnicastRemoteObject implements GSPRemote {
                 result = 0;
             } else {
                 // Acquire read lock for graph traversal
-                graphLock.readLock().lock();
+                lockRead();
                 try {
                     // Check if nodes exist in the graph
-                    if (graph.containsKey(sourceNode) && graph.containsKey(targetNode)){
-                        result = bfsShortestPath(sourceNode, targetNode); // Breadth-First Search for shortest path
+                    if (graph.containsNode(sourceNode) && graph.containsNode(targetNode)){
+                        ServerEvents.BfsEvent event = new ServerEvents.BfsEvent();
+                        event.begin();
+                        result = sharedShortestPath(sourceNode, targetNode, event); // Breadth-First Search for shortest path
+                        recordBfs(event, sourceNode, targetNode, result);
                         cache.computeIfAbsent(sourceNode, k -> new ConcurrentHashMap<>()).put(targetNode, result);
                     }
                 } finally {
@@ -212,44 +282,244 @@ public class GSPServer extends UnicastRemoteObject implements GSPRemote {
 
         long endTime = System.currentTimeMillis();
         processingTimes.put("query", processingTimes.getOrDefault("query", 0L) + (endTime - startTime));
+        metrics.queryLatency.record(System.nanoTime() - startNanos);
         log("Query: " + sourceNode + " -> " + targetNode + " = " + result + " (took " + (endTime - startTime) + "ms)");
 
         return result;
     }
 
+    /**
+     * Find the shortest path distance, sharing the BFS with concurrent queries from the same source.
+     * If a BFS from the source is already running against the same graph version, the query waits
+     * for that BFS to reach its target instead of starting another one.
+     * Must be called with the graph read lock held.
+     *
+     * @param event The event collecting the traversal's statistics
+     */
+    private int sharedShortestPath(int sourceNode, int targetNode, ServerEvents.BfsEvent event) {
+        long version = changeLog.lastSequence();
+        SourceFlight flight = new SourceFlight(sourceNode, version);
+        SourceFlight running = flights.putIfAbsent(sourceNode, flight);
+
+        if (running != null) {
+            CompletableFuture<Integer> shared = running.getVersion() == version ? running.attach(targetNode) : null;
+            if (shared != null) {
+                try {
+                    int result = shared.join();
+                    counts.put("shared", counts.getOrDefault("shared", 0) + 1);
+                    event.shared = true;
+                    return result;
+                } catch (CompletionException e) {
+                    log("Shared query failed, running own BFS: " + e.getMessage());
+                }
+            }
+            return bfsShortestPath(sourceNode, targetNode, null, event);
+        }
+
+        try {
+            return bfsShortestPath(sourceNode, targetNode, flight, event);
+        } catch (Throwable e) {
+            // Errors too (e.g. OutOfMemoryError): waiters must never be left blocked on the flight
+            flight.abandon(e);
+            throw e;
+        } finally {
+            flights.remove(sourceNode, flight);
+        }
+    }
+
     /**
      * Perform BFS to find the shortest path between two nodes.
+     * Without a current layout the search runs on a {@link BfsTree}, whose state is kept in int arrays.
      *
      * @param sourceNode The source node ID
      * @param targetNode The target node ID
+     * @param flight The flight whose waiters this BFS must also answer, or null
+     * @param event The event collecting the traversal's statistics
      * @return The shortest path distance (number of edges), or -1 if no path exists
      */
-    private int bfsShortestPath(int sourceNode, int targetNode) {
-        Queue<Integer> queue = new LinkedList<>();
-        Map<Integer, Integer> distances = new HashMap<>();
+    private int bfsShortestPath(int sourceNode, int targetNode, SourceFlight flight, ServerEvents.BfsEvent event) {
+        GraphLayout currentLayout = layout;
+        if (currentLayout != null && !currentLayout.isStale()) {
+            event.usedLayout = true;
+            return currentLayout.distance(sourceNode, targetNode, flight, event);
+        }
 
-        queue.add(sourceNode);
-        distances.put(sourceNode, 0);
+        BfsTree tree = new BfsTree(sourceNode, changeLog.lastSequence(), false);
+        return tree.distance(graph, targetNode, flight, event);
+    }
 
-        while (!queue.isEmpty()) {
-            int current = queue.poll();
-            int currentDistance = distances.get(current);
+    /**
+     * Commit a finished traversal's JFR event and add its statistics to the live counters.
+     * A query answered from a cached BFS tree without expanding it is not counted as a traversal.
+     */
+    private void recordBfs(ServerEvents.BfsEvent event, int sourceNode, int targetNode, int distance) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.sourceNode = sourceNode;
+            event.targetNode = targetNode;
+            event.distance = distance;
+            event.commit();
+        }
+        if (event.shared)
+            metrics.sharedQueries.increment();
+        else if (event.nodesVisited > 0)
+            metrics.recordBfs(event.nodesVisited, event.edgesScanned);
+    }
 
-            // Found target node
-            if (current == targetNode)
-                return currentDistance;
+    /**
+     * Query a shortest path between two nodes.
+     */
+    @Override
+    public int[] queryPath(int sourceNode, int targetNode) throws RemoteException {
+        checkReadable();
+        List<int[]> paths = queryShortestPathsInternal(sourceNode, targetNode, 1);
+        return paths.isEmpty() ? new int[0] : paths.get(0);
+    }
 
-            // Explore neighbors
-            for (int neighbor : graph.getOrDefault(current, Collections.emptySet())) {
-                if (!distances.containsKey(neighbor)) {
-                    distances.put(neighbor, currentDistance + 1);
-                    queue.add(neighbor);
+    /**
+     * Query several distinct shortest paths between two nodes.
+     */
+    @Override
+    public List<int[]> queryShortestPaths(int sourceNode, int targetNode, int maxPaths) throws RemoteException {
+        checkReadable();
+        return queryShortestPathsInternal(sourceNode, targetNode, maxPaths);
+    }
+
+    /**
+     * Internal implementation of shortest path reconstruction.
+     * Single path lookups reuse the BFS tree of an earlier query from the same source when the
+     * graph has not changed since, extending it only if the target was not reached yet.
+     */
+    private List<int[]> queryShortestPathsInternal(int sourceNode, int targetNode, int maxPaths) {
+        counts.put("query", counts.getOrDefault("query", 0) + 1);
+        long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        int limit = maxPaths <= 0 ? MAX_SHORTEST_PATHS : Math.min(maxPaths, MAX_SHORTEST_PATHS);
+        List<int[]> paths = new ArrayList<>();
+
+        lockRead();
+        try {
+            if (graph.containsNode(sourceNode) && graph.containsNode(targetNode)) {
+                if (sourceNode == targetNode) {
+                    paths.add(new int[]{sourceNode});
+                } else {
+                    ServerEvents.BfsEvent event = new ServerEvents.BfsEvent();
+                    event.begin();
+                    BfsTree tree = limit == 1 ? cachedBfsTree(sourceNode) : new BfsTree(sourceNode, changeLog.lastSequence(), true);
+                    paths = tree.paths(graph, targetNode, limit, event);
+                    if (limit == 1 && tree.size() > MAX_CACHED_TREE_NODES)
+                        bfsTrees.remove(sourceNode, tree);
+                    recordBfs(event, sourceNode, targetNode, paths.isEmpty() ? -1 : paths.get(0).length - 1);
                 }
+
+                if (limit == 1 && !paths.isEmpty())
+                    cache.computeIfAbsent(sourceNode, k -> new ConcurrentHashMap<>()).put(targetNode, paths.get(0).length - 1);
             }
+        } finally {
+            graphLock.readLock().unlock();
+        }
+
+        long endTime = System.currentTimeMillis();
+        processingTimes.put("query", processingTimes.getOrDefault("query", 0L) + (endTime - startTime));
+        metrics.queryLatency.record(System.nanoTime() - startNanos);
+        log("Path query: " + sourceNode + " -> " + targetNode + " = " + paths.size() + " path(s) (took " + (endTime - startTime) + "ms)");
+
+        return paths;
+    }
+
+    /**
+     * Get the BFS tree of a source node at the current graph version, creating it if needed.
+     * Trees are only kept once the initial graph has been loaded, since initial edges are not versioned.
+     * Must be called with the graph read lock held.
+     */
+    private BfsTree cachedBfsTree(int sourceNode) {
+        long version = changeLog.lastSequence();
+        BfsTree tree = bfsTrees.get(sourceNode);
+        if (tree != null && tree.getVersion() == version) {
+            metrics.treeCacheHits.increment();
+            return tree;
+        }
+
+        metrics.treeCacheMisses.increment();
+        tree = new BfsTree(sourceNode, version, false);
+        if (graphLoaded)
+            bfsTrees.put(sourceNode, tree);
+        return tree;
+    }
+
+    /**
+     * Query one page of the distances from one node to every node reachable from it.
+     * Pages are cut from the source's cached BFS tree, which is only extended as far as the
+     * requested page, so paging through the result at one graph version runs a single BFS.
+     */
+    @Override
+    public DistancePage querySingleSource(int sourceNode, int offset, int limit) throws RemoteException {
+        checkReadable();
+        if (offset < 0 || limit < 0 || limit > MAX_PAGE_SIZE)
+            throw new RemoteException("Page must have a non-negative offset and at most " + MAX_PAGE_SIZE + " nodes");
+        counts.put("query", counts.getOrDefault("query", 0) + 1);
+        long startTime = System.currentTimeMillis();
+        DistancePage page;
+
+        lockRead();
+        try {
+            ServerEvents.BfsEvent event = new ServerEvents.BfsEvent();
+            event.begin();
+            BfsTree tree = cachedBfsTree(sourceNode);
+            int[][] distances = tree.distances(graph, offset, limit, event);
+            page = new DistancePage(distances[0], distances[1], tree.getVersion());
+            // Drop a large tree once its last page was served
+            if (page.size() < limit && tree.size() > MAX_CACHED_TREE_NODES)
+                bfsTrees.remove(sourceNode, tree);
+            recordBfs(event, sourceNode, -1, -1);
+        } finally {
+            graphLock.readLock().unlock();
+        }
+
+        long endTime = System.currentTimeMillis();
+        processingTimes.put("query", processingTimes.getOrDefault("query", 0L) + (endTime - startTime));
+        log("Single source query: " + sourceNode + " page at " + offset + " returned " + page.size() + " nodes (took " + (endTime - startTime) + "ms)");
+
+        return page;
+    }
+
+    /**
+     * Query the distances between many source and target nodes in one call.
+     * Sources are split into groups of 64 that each run as one multi-source BFS; the groups run
+     * in parallel under a single read lock, so every row sees the same graph. The number of rows
+     * per call is bounded so that writers are not blocked for long.
+     */
+    @Override
+    public int[][] queryDistanceTable(int[] sourceNodes, int[] targetNodes) throws RemoteException {
+        checkReadable();
+        if (sourceNodes.length > MAX_TABLE_SOURCES)
+            throw new RemoteException("At most " + MAX_TABLE_SOURCES + " sources per distance table query");
+        counts.put("query", counts.getOrDefault("query", 0) + sourceNodes.length);
+        long startTime = System.currentTimeMillis();
+        int[][] table = new int[sourceNodes.length][];
+        int groups = (sourceNodes.length + MultiSourceBfs.MAX_SOURCES - 1) / MultiSourceBfs.MAX_SOURCES;
+
+        lockRead();
+        try {
+            // Worker threads only read the graph; writers stay blocked by the lock held here
+            IntStream.range(0, groups).parallel().forEach(g -> {
+                int from = g * MultiSourceBfs.MAX_SOURCES;
+                int[] group = Arrays.copyOfRange(sourceNodes, from, Math.min(from + MultiSourceBfs.MAX_SOURCES, sourceNodes.length));
+                ServerEvents.BfsEvent event = new ServerEvents.BfsEvent();
+                event.begin();
+                int[][] rows = MultiSourceBfs.distances(graph, group, targetNodes, event);
+                recordBfs(event, group[0], -1, -1);
+                System.arraycopy(rows, 0, table, from, rows.length);
+            });
+        } finally {
+            graphLock.readLock().unlock();
         }
 
-        // No path found
-        return -1;
+        long endTime = System.currentTimeMillis();
+        processingTimes.put("query", processingTimes.getOrDefault("query", 0L) + (endTime - startTime));
+        log("Distance table query: " + sourceNodes.length + "x" + targetNodes.length + " (took " + (endTime - startTime) + "ms)");
+
+        return table;
     }
 
     /**
@@ -257,6 +527,7 @@ public class GSPServer extends UnicastRemoteObject implements GSPRemote {
      */
     @Override
     public void addEdge(int sourceNode, int targetNode) throws RemoteException {
+        checkWritable();
         addEdgeInternal(sourceNode, targetNode, true);
     }
 
@@ -264,6 +535,10 @@ public class GSPServer extends UnicastRemoteObject implements GSPRemote {
      * Internal implementation of adding an edge.
      */
     private void addEdgeInternal(int sourceNode, int targetNode, boolean addTime) {
+        if (sourceNode == GraphStore.RESERVED_NODE || targetNode == GraphStore.RESERVED_NODE) {
+            log("Invalid node ID, edge skipped: " + sourceNode + " -> " + targetNode);
+            return;
+        }
         if (addTime)
             counts.put("add", counts.getOrDefault("add", 0) + 1);
         long startTime = System.currentTimeMillis();
@@ -271,22 +546,22 @@ public class GSPServer extends UnicastRemoteObject implements GSPRemote {
         if(useCache){
             cache = new ConcurrentHashMap<>();
         }
-        graphLock.writeLock().lock();
+        lockWrite();
         try {
             // Add the source node if it doesn't exist
-            if (!graph.containsKey(sourceNode)) {
-                graph.put(sourceNode, new HashSet<>());
+            if (graph.addNode(sourceNode))
                 nodeCount.incrementAndGet();
-            }
 
             // Add the target node if it doesn't exist
-            if (!graph.containsKey(targetNode)) {
-                graph.put(targetNode, new HashSet<>());
+            if (graph.addNode(targetNode))
                 nodeCount.incrementAndGet();
-            }
 
-            // Add the edge (if it doesn't already exist)
-            graph.get(sourceNode).add(targetNode);
+            // Add the edge (if it doesn't already exist), recording workload changes for subscribers
+            if (graph.addEdge(sourceNode, targetNode)) {
+                updateLayout('A', sourceNode, targetNode);
+                if (addTime)
+                    changeLog.append('A', sourceNode, targetNode);
+            }
         } finally {
             graphLock.writeLock().unlock();
         }
@@ -302,6 +577,7 @@ public class GSPServer extends UnicastRemoteObject implements GSPRemote {
      */
     @Override
     public void deleteEdge(int sourceNode, int targetNode) throws RemoteException {
+        checkWritable();
         deleteEdgeInternal(sourceNode, targetNode);
     }
 
@@ -315,11 +591,13 @@ public class GSPServer extends UnicastRemoteObject implements GSPRemote {
         if(useCache){
             cache = new ConcurrentHashMap<>();
         }
-        graphLock.writeLock().lock();
+        lockWrite();
         try {
             // If the source node exists, remove the edge to the target
-            if (graph.containsKey(sourceNode))
-                graph.get(sourceNode).remove(targetNode);
+            if (graph.removeEdge(sourceNode, targetNode)) {
+                updateLayout('D', sourceNode, targetNode);
+                changeLog.append('D', sourceNode, targetNode);
+            }
         } finally {
             graphLock.writeLock().unlock();
         }
@@ -334,12 +612,30 @@ public class GSPServer extends UnicastRemoteObject implements GSPRemote {
      */
     @Override
     public List<Integer> processBatch(List<String[]> operations) throws RemoteException {
+        checkReadable();
+        if (replica) {
+            for (String[] operation : operations) {
+                if (operation.length > 0 && !operation[0].startsWith("Q"))
+                    checkWritable();
+            }
+        }
+
         List<Integer> results = new ArrayList<>();
         long batchStartTime = System.currentTimeMillis();
+        long batchStartNanos = System.nanoTime();
+        ServerEvents.BatchEvent event = new ServerEvents.BatchEvent();
+        event.begin();
 
         for (String[] operation : operations)
             processOperation(results, operation);
 
+        event.end();
+        if (event.shouldCommit()) {
+            event.operations = operations.size();
+            event.queries = results.size();
+            event.commit();
+        }
+        metrics.batchLatency.record(System.nanoTime() - batchStartNanos);
         long batchEndTime = System.currentTimeMillis();
         log("Processed batch with " + operations.size() + " operations (took " + (batchEndTime - batchStartTime) + "ms)");
 
@@ -348,6 +644,494 @@ public class GSPServer extends UnicastRemoteObject implements GSPRemote {
         return results;
     }
 
+    /**
+     * Process a batch of queries once the graph has reached a minimum version.
+     */
+    @Override
+    public VersionedResult processBatchVersioned(List<String[]> operations, long minVersion) throws RemoteException {
+        checkReadable();
+        try {
+            changeLog.awaitAfter(minVersion - 1, REPLICA_WAIT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long version = changeLog.lastSequence();
+        if (version < minVersion)
+            throw new RemoteException("Graph is at version " + version + ", behind requested version " + minVersion);
+
+        return processBatchVersioned(operations);
+    }
+
+    /**
+     * Get a full copy of the graph.
+     */
+    @Override
+    public GraphSnapshot getSnapshot() throws RemoteException {
+        if (!graphLoaded)
+            throw new RemoteException("Initial graph is still loading");
+
+        lockRead();
+        try {
+            int[] nodes = graph.nodes();
+            int edgeCount = 0;
+            for (int node : nodes)
+                edgeCount += graph.degree(node);
+
+            int[] edgeSources = new int[edgeCount];
+            int[] edgeTargets = new int[edgeCount];
+            int e = 0;
+            for (int node : nodes) {
+                for (PrimitiveIterator.OfInt targets = graph.neighbors(node); targets.hasNext(); ) {
+                    edgeSources[e] = node;
+                    edgeTargets[e++] = targets.nextInt();
+                }
+            }
+
+            log("Snapshot taken at version " + changeLog.lastSequence() + " (" + nodes.length + " nodes, " + edgeCount + " edges)");
+            return new GraphSnapshot(changeLog.lastSequence(), nodes, edgeSources, edgeTargets);
+        } finally {
+            graphLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Run this server as a read-only replica of a primary server.
+     * The replica loads a snapshot of the primary's graph, then keeps pulling the primary's
+     * change stream and applies the changes in order, keeping the primary's version numbers.
+     * The server should already be marked as a replica with {@link #setReplica(boolean)} before it was started.
+     *
+     * @param primaryAddress The primary server's address
+     * @param primaryRegistryPort The primary server's RMI registry port
+     */
+    public void startReplication(String primaryAddress, int primaryRegistryPort) {
+        replica = true;
+        replicator = new Thread(() -> replicate(primaryAddress, primaryRegistryPort), "replicator");
+        replicator.setDaemon(true);
+        replicator.start();
+    }
+
+    /**
+     * Replication loop, reconnecting and reloading the snapshot whenever the primary is
+     * unreachable or this replica falls out of the primary's change log.
+     */
+    private void replicate(String primaryAddress, int primaryRegistryPort) {
+        String serviceName = "rmi://" + primaryAddress + ":" + primaryRegistryPort + "/GSPService";
+        GSPRemote primary = null;
+        boolean synced = false;
+
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                if (primary == null) {
+                    primary = (GSPRemote) Naming.lookup(serviceName);
+                    log("Replicating from primary at " + serviceName);
+                }
+                if (!synced) {
+                    graphLoaded = false;
+                    loadSnapshot(primary.getSnapshot());
+                    synced = true;
+                }
+
+                ChangeBatch batch = primary.pollChanges(0, changeLog.lastSequence(), REPLICATION_BATCH, REPLICATION_POLL_MILLIS);
+                if (batch.isTruncated()) {
+                    log("Replica fell behind the primary's change log, reloading snapshot");
+                    synced = false;
+                    continue;
+                }
+                for (EdgeChange change : batch.getChanges())
+                    applyReplicatedChange(change);
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                log("Replication error: " + e.getMessage());
+                primary = null;
+                try {
+                    Thread.sleep(REPLICATION_POLL_MILLIS);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Replace the whole graph with a snapshot from the primary.
+     */
+    private void loadSnapshot(GraphSnapshot snapshot) throws InterruptedException {
+        if (Thread.currentThread().isInterrupted())
+            throw new InterruptedException();
+
+        ServerEvents.GraphLoadEvent event = new ServerEvents.GraphLoadEvent();
+        event.begin();
+        lockWrite();
+        try {
+            graph.clear();
+            for (int node : snapshot.getNodes())
+                graph.addNode(node);
+            for (int i = 0; i < snapshot.getEdgeSources().length; i++)
+                graph.addEdge(snapshot.getEdgeSources()[i], snapshot.getEdgeTargets()[i]);
+            nodeCount.set(graph.nodeCount());
+            cache = new ConcurrentHashMap<>();
+            bfsTrees.clear();
+            changeLog.reset(snapshot.getVersion());
+            layout = null;
+            graphLoaded = true;
+        } finally {
+            graphLock.writeLock().unlock();
+        }
+        event.source = "snapshot at version " + snapshot.getVersion();
+        event.nodes = snapshot.getNodes().length;
+        event.commit();
+        if (layoutOrder != null)
+            scheduleLayoutRebuild();
+        log("Loaded snapshot at version " + snapshot.getVersion() + " (" + snapshot.getNodes().length + " nodes)");
+    }
+
+    /**
+     * Apply one change pulled from the primary.
+     * The change is always appended to the local log so that sequence numbers stay aligned with the primary.
+     */
+    private void applyReplicatedChange(EdgeChange change) {
+        int sourceNode = change.getSourceNode();
+        int targetNode = change.getTargetNode();
+
+        lockWrite();
+        try {
+            if (change.getOperation() == 'A') {
+                if (graph.addNode(sourceNode))
+                    nodeCount.incrementAndGet();
+                if (graph.addNode(targetNode))
+                    nodeCount.incrementAndGet();
+                if (graph.addEdge(sourceNode, targetNode))
+                    updateLayout('A', sourceNode, targetNode);
+            } else if (graph.removeEdge(sourceNode, targetNode)) {
+                updateLayout('D', sourceNode, targetNode);
+            }
+            if (useCache) {
+                cache = new ConcurrentHashMap<>();
+            }
+            changeLog.append(change.getOperation(), sourceNode, targetNode);
+        } finally {
+            graphLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Set the node order of the BFS layout, or null to traverse the adjacency map directly.
+     * Takes effect at the next {@link #rebuildLayout()}.
+     */
+    public void setLayoutOrder(GraphLayout.Order order) {
+        this.layoutOrder = order;
+        if (order == null) {
+            layout = null;
+            layoutScratch.clear();
+        }
+    }
+
+    /**
+     * Rebuild the BFS layout from the current graph.
+     * The build only holds the read lock. Edge changes made meanwhile are replayed from the
+     * change log onto the new layout before it replaces the old one.
+     */
+    public void rebuildLayout() {
+        GraphLayout.Order order = layoutOrder;
+        if (order == null)
+            return;
+
+        long startTime = System.currentTimeMillis();
+        GraphLayout rebuilt;
+        long builtAt;
+        lockRead();
+        try {
+            builtAt = changeLog.lastSequence();
+            rebuilt = GraphLayout.build(graph, order, layoutScratch);
+        } finally {
+            graphLock.readLock().unlock();
+        }
+
+        lockWrite();
+        try {
+            if (!changeLog.isAvailable(builtAt)) {
+                log("Layout rebuild discarded, graph changed too much while building");
+                return;
+            }
+            for (EdgeChange change : changeLog.readAfter(builtAt, Integer.MAX_VALUE)) {
+                if (change.getOperation() == 'A')
+                    rebuilt.addEdge(change.getSourceNode(), change.getTargetNode());
+                else
+                    rebuilt.deleteEdge(change.getSourceNode(), change.getTargetNode());
+            }
+            layout = rebuilt;
+        } finally {
+            graphLock.writeLock().unlock();
+        }
+
+        long endTime = System.currentTimeMillis();
+        log("Rebuilt " + order + " layout of " + nodeCount.get() + " nodes (took " + (endTime - startTime) + "ms)");
+    }
+
+    /**
+     * Mirror an edge change into the BFS layout, scheduling a rebuild once it has drifted too far.
+     * Must be called with the graph write lock held.
+     */
+    private void updateLayout(char operation, int sourceNode, int targetNode) {
+        GraphLayout current = layout;
+        if (current == null)
+            return;
+
+        if (operation == 'A')
+            current.addEdge(sourceNode, targetNode);
+        else
+            current.deleteEdge(sourceNode, targetNode);
+        if (current.needsRebuild())
+            scheduleLayoutRebuild();
+    }
+
+    /**
+     * Rebuild the layout on the background thread, unless a rebuild is already running.
+     */
+    private void scheduleLayoutRebuild() {
+        if (!layoutRebuilding.compareAndSet(false, true))
+            return;
+
+        synchronized (layoutRebuilding) {
+            if (layoutExecutor == null) {
+                layoutExecutor = Executors.newSingleThreadExecutor(r -> {
+                    Thread thread = new Thread(r, "layout-rebuilder");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+        layoutExecutor.execute(() -> {
+            try {
+                rebuildLayout();
+            } finally {
+                layoutRebuilding.set(false);
+            }
+        });
+    }
+
+    /**
+     * Reject writes on a read-only replica.
+     */
+    private void checkWritable() throws RemoteException {
+        if (replica)
+            throw new RemoteException("Server is a read-only replica, send writes to the primary");
+    }
+
+    /**
+     * Reject reads on a replica that holds no snapshot of the primary, so clients fall back to the primary.
+     */
+    private void checkReadable() throws RemoteException {
+        if (replica && !graphLoaded)
+            throw new RemoteException("Replica has not synchronized with the primary yet");
+    }
+
+    /**
+     * Get the current graph version.
+     */
+    @Override
+    public long getGraphVersion() throws RemoteException {
+        return changeLog.lastSequence();
+    }
+
+    /**
+     * Register a change-stream subscriber.
+     */
+    @Override
+    public long subscribe() throws RemoteException {
+        expireSubscriptions();
+        long subscriberId = nextSubscriberId.incrementAndGet();
+        subscriptions.put(subscriberId, new Subscription());
+        log("Subscriber " + subscriberId + " registered");
+        return subscriberId;
+    }
+
+    /**
+     * Remove a subscriber and all of its watches.
+     */
+    @Override
+    public void unsubscribe(long subscriberId) throws RemoteException {
+        subscriptions.remove(subscriberId);
+        log("Subscriber " + subscriberId + " removed");
+    }
+
+    /**
+     * Watch the distances between node pairs.
+     */
+    @Override
+    public void watchDistances(long subscriberId, int[] sourceNodes, int[] targetNodes, int[] knownDistances) throws RemoteException {
+        ConcurrentHashMap<Long, Integer> watches = subscription(subscriberId).getWatches();
+        if (watches.size() + sourceNodes.length > MAX_WATCHES)
+            throw new RemoteException("Subscriber " + subscriberId + " would exceed " + MAX_WATCHES + " watched pairs");
+        for (int i = 0; i < sourceNodes.length; i++)
+            watches.put(pairKey(sourceNodes[i], targetNodes[i]), knownDistances[i]);
+    }
+
+    /**
+     * Stop watching the distances between node pairs.
+     */
+    @Override
+    public void unwatchDistances(long subscriberId, int[] sourceNodes, int[] targetNodes) throws RemoteException {
+        ConcurrentHashMap<Long, Integer> watches = subscription(subscriberId).getWatches();
+        for (int i = 0; i < sourceNodes.length; i++)
+            watches.remove(pairKey(sourceNodes[i], targetNodes[i]));
+    }
+
+    /**
+     * Poll the edge change stream.
+     * Watched distances are only re-evaluated once the subscriber has caught up with the log,
+     * so the reported distances always match the returned sequence number.
+     * Subscriber 0 reads the stream without watches and without a lease.
+     */
+    @Override
+    public ChangeBatch pollChanges(long subscriberId, long afterSequence, int maxChanges, long timeoutMillis) throws RemoteException {
+        expireSubscriptions();
+        Subscription subscription = subscriberId == 0 ? null : subscription(subscriberId);
+        try {
+            changeLog.awaitAfter(afterSequence, Math.min(timeoutMillis, MAX_POLL_MILLIS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (subscription != null)
+            subscription.renew();
+
+        ConcurrentHashMap<Long, Integer> watches = subscription == null ? null : subscription.getWatches();
+        lockRead();
+        try {
+            long head = changeLog.lastSequence();
+            if (!changeLog.isAvailable(afterSequence)) {
+                log("Subscriber " + subscriberId + " fell behind at sequence " + afterSequence + ", resynchronizing");
+                return new ChangeBatch(head, true, Collections.emptyList(), evaluateWatches(watches, true));
+            }
+
+            List<EdgeChange> changes = changeLog.readAfter(afterSequence, maxChanges);
+            long lastSequence = changes.isEmpty() ? afterSequence : changes.get(changes.size() - 1).getSequence();
+            List<int[]> changedWatches = lastSequence == head && !changes.isEmpty()
+                    ? evaluateWatches(watches, false)
+                    : Collections.emptyList();
+            return new ChangeBatch(lastSequence, false, changes, changedWatches);
+        } finally {
+            graphLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Look up a subscriber and renew its lease.
+     *
+     * @throws RemoteException If the subscriber is unknown or its lease expired
+     */
+    private Subscription subscription(long subscriberId) throws RemoteException {
+        Subscription subscription = subscriptions.get(subscriberId);
+        if (subscription == null)
+            throw new RemoteException("Unknown subscriber: " + subscriberId);
+        subscription.renew();
+        return subscription;
+    }
+
+    /**
+     * Drop the subscribers whose lease expired, checking at most a few times per lease.
+     */
+    private void expireSubscriptions() {
+        long now = System.currentTimeMillis();
+        long lastCheck = lastLeaseCheck.get();
+        if (now - lastCheck < SUBSCRIPTION_LEASE_MILLIS / 4 || !lastLeaseCheck.compareAndSet(lastCheck, now))
+            return;
+
+        for (Map.Entry<Long, Subscription> entry : subscriptions.entrySet()) {
+            if (entry.getValue().isExpired(now, SUBSCRIPTION_LEASE_MILLIS) && subscriptions.remove(entry.getKey(), entry.getValue()))
+                log("Subscriber " + entry.getKey() + " expired");
+        }
+    }
+
+    /**
+     * Recompute the distances of watched pairs at the current graph version.
+     * Distances are memoized per graph version and shared by all subscribers, so a pair watched
+     * by many clients is evaluated once per change. Missing pairs are computed by multi-source
+     * BFS, up to 64 watched sources per traversal.
+     * Must be called with the graph read lock held.
+     *
+     * @param watches The subscriber's watched pairs and their last reported distances, may be null
+     * @param reportAll True to report every pair, false to report only the pairs whose distance changed
+     * @return The reported pairs as [source, target, distance]
+     */
+    private List<int[]> evaluateWatches(ConcurrentHashMap<Long, Integer> watches, boolean reportAll) {
+        List<int[]> changed = new ArrayList<>();
+        if (watches == null || watches.isEmpty())
+            return changed;
+
+        Map<Long, Integer> memo;
+        synchronized (watchMemoLock) {
+            long version = changeLog.lastSequence();
+            if (watchMemoVersion != version) {
+                watchMemo = new ConcurrentHashMap<>();
+                watchMemoVersion = version;
+            }
+            memo = watchMemo;
+        }
+
+        Map<Integer, Set<Integer>> missing = new HashMap<>();
+        for (long key : watches.keySet()) {
+            if (!memo.containsKey(key))
+                missing.computeIfAbsent((int) (key >> 32), k -> new HashSet<>()).add((int) key);
+        }
+        computeWatchDistances(missing, memo);
+
+        for (Map.Entry<Long, Integer> watch : watches.entrySet()) {
+            long key = watch.getKey();
+            Integer distance = memo.get(key);
+            if (distance == null)
+                continue; // Watched after the missing pairs were collected; evaluated at the next change
+            Integer previous = watches.put(key, distance);
+            if (reportAll || previous == null || !previous.equals(distance))
+                changed.add(new int[]{(int) (key >> 32), (int) key, distance});
+        }
+        return changed;
+    }
+
+    /**
+     * Compute the distances of the given pairs into the memo, one multi-source BFS per group of sources.
+     */
+    private void computeWatchDistances(Map<Integer, Set<Integer>> targetsBySource, Map<Long, Integer> memo) {
+        List<Integer> sources = new ArrayList<>(targetsBySource.keySet());
+        for (int from = 0; from < sources.size(); from += MultiSourceBfs.MAX_SOURCES) {
+            List<Integer> group = sources.subList(from, Math.min(from + MultiSourceBfs.MAX_SOURCES, sources.size()));
+            Set<Integer> targets = new HashSet<>();
+            for (int source : group)
+                targets.addAll(targetsBySource.get(source));
+            int[] sourceNodes = group.stream().mapToInt(Integer::intValue).toArray();
+            int[] targetNodes = targets.stream().mapToInt(Integer::intValue).toArray();
+
+            ServerEvents.BfsEvent event = new ServerEvents.BfsEvent();
+            event.begin();
+            int[][] rows = MultiSourceBfs.distances(graph, sourceNodes, targetNodes, event);
+            recordBfs(event, sourceNodes[0], -1, -1);
+            for (int i = 0; i < sourceNodes.length; i++) {
+                for (int j = 0; j < targetNodes.length; j++) {
+                    if (targetsBySource.get(sourceNodes[i]).contains(targetNodes[j]))
+                        memo.put(pairKey(sourceNodes[i], targetNodes[j]), rows[i][j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Pack a (source, target) pair into a single map key.
+     */
+    private static long pairKey(int sourceNode, int targetNode) {
+        return ((long) sourceNode << 32) | (targetNode & 0xffffffffL);
+    }
+
+    /**
+     * Process a batch of operations and report the graph versions before and after it.
+     */
+    @Override
+    public VersionedResult processBatchVersioned(List<String[]> operations) throws RemoteException {
+        long startVersion = changeLog.lastSequence();
+        List<Integer> results = processBatch(operations);
+        return new VersionedResult(results, startVersion, changeLog.lastSequence());
+    }
+
     /**
      * Get performance metrics from the server.
      */
@@ -366,7 +1150,46 @@ public class GSPServer extends UnicastRemoteObject implements GSPRemote {
                 "Average Query Time: " + avgQueryTime + "ms\n" +
                 "Average Add Time: " + avgAddTime + "ms\n" +
                 "Average Delete Time: " + avgDeleteTime + "ms\n" + 
-                "Total Average Time: " + totalAvgTime + " ms\n";
+                "Total Average Time: " + totalAvgTime + " ms\n" +
+                "Shared Queries: " + counts.getOrDefault("shared", 0) + "\n";
+    }
+
+    /**
+     * Acquire the graph read lock, recording how long the acquisition waited.
+     */
+    private void lockRead() {
+        acquire(graphLock.readLock(), false);
+    }
+
+    /**
+     * Acquire the graph write lock, recording how long the acquisition waited.
+     */
+    private void lockWrite() {
+        acquire(graphLock.writeLock(), true);
+    }
+
+    private void acquire(Lock lock, boolean write) {
+        ServerEvents.LockWaitEvent event = new ServerEvents.LockWaitEvent();
+        event.begin();
+        long startNanos = System.nanoTime();
+        lock.lock();
+        metrics.recordLockWait(write, System.nanoTime() - startNanos);
+        event.end();
+        if (event.shouldCommit()) {
+            event.write = write;
+            event.commit();
+        }
+    }
+
+    /**
+     * Serve live counters and latency histograms at http://host:port/metrics in the Prometheus text format.
+     *
+     * @param address The local address the endpoint binds to
+     * @param port The HTTP port of the metrics endpoint
+     */
+    public void startMetricsEndpoint(String address, int port) throws IOException {
+        metrics.startEndpoint(address, port);
+        log("Metrics endpoint listening on " + address + ":" + port);
     }
 
     /**
@@ -387,6 +1210,9 @@ public class GSPServer extends UnicastRemoteObject implements GSPRemote {
      */
     public void stop() {
         isRunning = false;
+        if (replicator != null)
+            replicator.interrupt();
+        metrics.stopEndpoint();
         try {
             if (serverSocket != null && !serverSocket.isClosed())
                 serverSocket.close();
@@ -408,6 +1234,14 @@ public class GSPServer extends UnicastRemoteObject implements GSPRemote {
         return isRunning;
     }
 
+    public boolean isReplica() {return replica;}
+
+    /**
+     * Mark this server as a read-only replica. Call before {@link #start()}, so that clients
+     * never see it accept writes or answer reads before its first snapshot is loaded.
+     */
+    public void setReplica(boolean replica) {this.replica = replica;}
+
     public boolean isUseCache() {return useCache;}
 
     public void setUseCache(boolean useCache) {this.useCache = useCache;}
@@ -0,0 +1,380 @@
+package Server;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Compact, cache-friendly copy of the graph used for BFS.
+ * <p>
+ * Nodes are relabelled to dense internal indices in a locality-preserving order, and every
+ * node's neighbours are stored contiguously in one array (CSR layout), so a traversal walks
+ * mostly sequential memory instead of hash map entries. Node IDs are translated only when a
+ * query enters and leaves the layout.
+ * <p>
+ * Queries borrow their BFS buffers from a bounded {@link ScratchPool} rather than keeping one
+ * per thread, so the buffers' memory does not grow with the number of client connections.
+ * <p>
+ * Edge changes made after the layout was built are kept in a small overlay. Once the overlay
+ * grows large, or a node unknown to the layout appears, the layout should be rebuilt.
+ * All methods must be called with the graph lock held: mutations under the write lock,
+ * traversals under the read lock.
+ */
+class GraphLayout {
+
+    /**
+     * Order in which nodes are laid out.
+     */
+    enum Order {
+        BFS,    // Reverse Cuthill-McKee: BFS from low-degree nodes, so neighbours get nearby indices
+        DEGREE  // Highest out-degree first, so hub adjacency stays hot in cache
+    }
+
+    private final int[] nodeIds;                    // Internal index -> node ID
+    private final NodeIndex indexOf;                // Node ID -> internal index
+    private final int[] offsets;                    // Neighbours of node i are neighbors[offsets[i] .. offsets[i + 1])
+    private final int[] neighbors;
+    private final Map<Integer, Set<Integer>> addedEdges = new HashMap<>();  // Overlay of edges added since the build
+    private final Set<Long> deletedEdges = new HashSet<>();                 // Overlay of laid out edges deleted since the build
+    private int addedEdgeCount;                     // Number of edges in the added overlay
+    private final int rebuildThreshold;             // Overlay size at which a rebuild pays off
+    private boolean stale;                          // True once a node unknown to the layout was added
+
+    private final ScratchPool scratchPool;          // BFS buffers borrowed by queries
+
+    private static final int MIN_REBUILD_THRESHOLD = 1024;
+
+    /**
+     * Per-traversal BFS buffers indexed by internal node index.
+     */
+    static class Scratch {
+        private int[] queue = new int[0];
+        private int[] distances = new int[0];
+        private int[] visited = new int[0];     // Stamp of the traversal that last visited each node
+        private int stamp;
+
+        private void ensureCapacity(int nodeCount) {
+            if (queue.length >= nodeCount)
+                return;
+            // Some headroom, so that a slowly growing graph does not reallocate at every rebuild
+            int capacity = nodeCount + (nodeCount >> 3);
+            queue = new int[capacity];
+            distances = new int[capacity];
+            visited = new int[capacity];
+            stamp = 0;
+        }
+
+        /**
+         * Start a traversal: a fresh stamp marks every node as unvisited without clearing the arrays.
+         */
+        private int nextStamp() {
+            if (++stamp == Integer.MAX_VALUE) {
+                Arrays.fill(visited, 0);
+                stamp = 1;
+            }
+            return stamp;
+        }
+    }
+
+    /**
+     * Bounded pool of BFS buffers, shared by all queries and kept across layout rebuilds.
+     * At most size buffers of 12 bytes per node are ever created; once all are borrowed,
+     * further queries wait for one to be returned.
+     */
+    static class ScratchPool {
+        private final int size;
+        private final ArrayBlockingQueue<Scratch> idle;
+        private final AtomicInteger created = new AtomicInteger();
+
+        ScratchPool(int size) {
+            this.size = size;
+            this.idle = new ArrayBlockingQueue<>(size);
+        }
+
+        Scratch borrow(int nodeCount) {
+            Scratch scratch = idle.poll();
+            if (scratch == null) {
+                if (created.incrementAndGet() <= size) {
+                    scratch = new Scratch();
+                } else {
+                    created.decrementAndGet();
+                    scratch = take();
+                }
+            }
+            scratch.ensureCapacity(nodeCount);
+            return scratch;
+        }
+
+        void release(Scratch scratch) {
+            idle.offer(scratch);
+        }
+
+        /**
+         * Drop the idle buffers, e.g. once the layout is disabled.
+         */
+        void clear() {
+            List<Scratch> dropped = new ArrayList<>();
+            created.addAndGet(-idle.drainTo(dropped));
+        }
+
+        private Scratch take() {
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    try {
+                        return idle.take();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } finally {
+                if (interrupted)
+                    Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private GraphLayout(int[] nodeIds, NodeIndex indexOf, int[] offsets, int[] neighbors, ScratchPool scratchPool) {
+        this.nodeIds = nodeIds;
+        this.indexOf = indexOf;
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+        this.scratchPool = scratchPool;
+        this.rebuildThreshold = Math.max(MIN_REBUILD_THRESHOLD, neighbors.length / 10);
+    }
+
+    /**
+     * Build a layout from the current graph.
+     *
+     * @param graph The graph storage
+     * @param order The order in which nodes are laid out
+     * @param scratchPool The pool queries borrow their BFS buffers from
+     */
+    static GraphLayout build(GraphStore graph, Order order, ScratchPool scratchPool) {
+        int[] nodeIds = order == Order.DEGREE ? degreeOrder(graph) : reverseCuthillMcKee(graph);
+
+        NodeIndex indexOf = new NodeIndex(nodeIds.length);
+        for (int nodeId : nodeIds)
+            indexOf.add(nodeId);
+
+        int[] offsets = new int[nodeIds.length + 1];
+        for (int i = 0; i < nodeIds.length; i++)
+            offsets[i + 1] = offsets[i] + graph.degree(nodeIds[i]);
+
+        int[] neighbors = new int[offsets[nodeIds.length]];
+        for (int i = 0; i < nodeIds.length; i++) {
+            int position = offsets[i];
+            for (PrimitiveIterator.OfInt targets = graph.neighbors(nodeIds[i]); targets.hasNext(); )
+                neighbors[position++] = indexOf.indexOf(targets.nextInt());
+            // Sorted neighbour indices make the next level's accesses move forward through memory
+            Arrays.sort(neighbors, offsets[i], position);
+        }
+
+        return new GraphLayout(nodeIds, indexOf, offsets, neighbors, scratchPool);
+    }
+
+    private static int[] degreeOrder(GraphStore graph) {
+        return Arrays.stream(graph.nodes())
+                .boxed()
+                .sorted((a, b) -> Integer.compare(graph.degree(b), graph.degree(a)))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private static int[] reverseCuthillMcKee(GraphStore graph) {
+        Comparator<Integer> byDegree = Comparator.comparingInt(graph::degree);
+        List<Integer> nodes = new ArrayList<>();
+        for (int node : graph.nodes())
+            nodes.add(node);
+        nodes.sort(byDegree);
+
+        int[] order = new int[nodes.size()];
+        int count = 0;
+        Set<Integer> visited = new HashSet<>(nodes.size() * 2);
+        List<Integer> level = new ArrayList<>();
+        for (int start : nodes) {
+            if (!visited.add(start))
+                continue;
+            int head = count;
+            order[count++] = start;
+            while (head < count) {
+                level.clear();
+                for (PrimitiveIterator.OfInt targets = graph.neighbors(order[head++]); targets.hasNext(); ) {
+                    int neighbor = targets.nextInt();
+                    if (visited.add(neighbor))
+                        level.add(neighbor);
+                }
+                level.sort(byDegree);
+                for (int neighbor : level)
+                    order[count++] = neighbor;
+            }
+        }
+
+        for (int i = 0, j = count - 1; i < j; i++, j--) {
+            int node = order[i];
+            order[i] = order[j];
+            order[j] = node;
+        }
+        return order;
+    }
+
+    /**
+     * Record an added edge in the overlay.
+     */
+    void addEdge(int sourceNode, int targetNode) {
+        int source = indexOf.indexOf(sourceNode);
+        int target = indexOf.indexOf(targetNode);
+        if (source < 0 || target < 0) {
+            stale = true;
+            return;
+        }
+        if (!deletedEdges.remove(pairKey(source, target)) && !isLaidOut(source, target)
+                && addedEdges.computeIfAbsent(source, k -> new HashSet<>()).add(target))
+            addedEdgeCount++;
+    }
+
+    /**
+     * Record a deleted edge in the overlay.
+     */
+    void deleteEdge(int sourceNode, int targetNode) {
+        int source = indexOf.indexOf(sourceNode);
+        int target = indexOf.indexOf(targetNode);
+        if (source < 0 || target < 0)
+            return;
+
+        Set<Integer> added = addedEdges.get(source);
+        if (added != null && added.remove(target)) {
+            addedEdgeCount--;
+            if (added.isEmpty())
+                addedEdges.remove(source);
+        } else if (isLaidOut(source, target)) {
+            deletedEdges.add(pairKey(source, target));
+        }
+    }
+
+    private boolean isLaidOut(int source, int target) {
+        return Arrays.binarySearch(neighbors, offsets[source], offsets[source + 1], target) >= 0;
+    }
+
+    /**
+     * Whether queries can no longer be answered from this layout.
+     */
+    boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * Whether the overlay has grown enough that the layout should be rebuilt.
+     */
+    boolean needsRebuild() {
+        return stale || addedEdgeCount + deletedEdges.size() > rebuildThreshold;
+    }
+
+    /**
+     * Perform BFS over the layout to find the shortest path distance between two nodes.
+     *
+     * @param sourceNode The source node ID
+     * @param targetNode The target node ID
+     * @param flight The flight whose waiters this BFS must also answer, or null
+     * @param event The event collecting the traversal's statistics
+     * @return The shortest path distance (number of edges), or -1 if no path exists
+     */
+    int distance(int sourceNode, int targetNode, SourceFlight flight, ServerEvents.BfsEvent event) {
+        int source = indexOf.indexOf(sourceNode);
+        int target = indexOf.indexOf(targetNode);
+        if (source < 0) {
+            if (flight != null)
+                flight.close(node -> -1);
+            return -1;
+        }
+        if (source == target && flight == null)
+            return 0;
+
+        Scratch scratch = scratchPool.borrow(nodeIds.length);
+        try {
+            return distance(source, target, scratch, flight, event);
+        } finally {
+            scratchPool.release(scratch);
+        }
+    }
+
+    private int distance(int source, int target, Scratch scratch, SourceFlight flight, ServerEvents.BfsEvent event) {
+        int[] queue = scratch.queue;
+        int[] distances = scratch.distances;
+        int[] visited = scratch.visited;
+        int stamp = scratch.nextStamp();
+
+        boolean checkDeleted = !deletedEdges.isEmpty();
+        boolean checkAdded = !addedEdges.isEmpty();
+        int head = 0;
+        int tail = 0;
+        int result = source == target ? 0 : -1;
+        queue[tail++] = source;
+        visited[source] = stamp;
+        distances[source] = 0;
+
+        IntUnaryOperator distanceOf = node -> {
+            int index = indexOf.indexOf(node);
+            return index >= 0 && visited[index] == stamp ? distances[index] : -1;
+        };
+
+        while (head < tail) {
+            if (flight != null)
+                flight.resolveReached(distanceOf);
+
+            int current = queue[head++];
+            int nextDistance = distances[current] + 1;
+            event.nodesVisited++;
+            event.edgesScanned += offsets[current + 1] - offsets[current];
+
+            for (int i = offsets[current]; i < offsets[current + 1]; i++) {
+                int neighbor = neighbors[i];
+                if (visited[neighbor] == stamp || (checkDeleted && deletedEdges.contains(pairKey(current, neighbor))))
+                    continue;
+                if (neighbor == target && flight == null)
+                    return nextDistance;
+                visited[neighbor] = stamp;
+                distances[neighbor] = nextDistance;
+                queue[tail++] = neighbor;
+                if (flight != null) {
+                    if (neighbor == target)
+                        result = nextDistance;
+                    if (flight.hasWaiters())
+                        flight.reached(nodeIds[neighbor], nextDistance);
+                }
+            }
+
+            if (checkAdded) {
+                Set<Integer> added = addedEdges.getOrDefault(current, Collections.emptySet());
+                event.edgesScanned += added.size();
+                for (int neighbor : added) {
+                    if (visited[neighbor] == stamp)
+                        continue;
+                    if (neighbor == target && flight == null)
+                        return nextDistance;
+                    visited[neighbor] = stamp;
+                    distances[neighbor] = nextDistance;
+                    queue[tail++] = neighbor;
+                    if (flight != null) {
+                        if (neighbor == target)
+                            result = nextDistance;
+                        if (flight.hasWaiters())
+                            flight.reached(nodeIds[neighbor], nextDistance);
+                    }
+                }
+            }
+
+            if (result != -1 && flight.tryClose())
+                return result;
+        }
+
+        // Every reachable node was visited: answer the remaining waiters
+        if (flight != null)
+            flight.close(distanceOf);
+        return result;
+    }
+
+    private static long pairKey(int source, int target) {
+        return ((long) source << 32) | (target & 0xffffffffL);
+    }
+}
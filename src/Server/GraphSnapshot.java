@@ -0,0 +1,29 @@
+package Server;
+import java.io.Serializable;
+
+/**
+ * A full copy of the graph at a given version, used to bootstrap replicas.
+ */
+public class GraphSnapshot implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long version;         // Graph version the snapshot was taken at
+    private final int[] nodes;          // Every node ID, including nodes without edges
+    private final int[] edgeSources;    // Edge source node IDs, parallel to edgeTargets
+    private final int[] edgeTargets;
+
+    public GraphSnapshot(long version, int[] nodes, int[] edgeSources, int[] edgeTargets) {
+        this.version = version;
+        this.nodes = nodes;
+        this.edgeSources = edgeSources;
+        this.edgeTargets = edgeTargets;
+    }
+
+    public long getVersion() {return version;}
+
+    public int[] getNodes() {return nodes;}
+
+    public int[] getEdgeSources() {return edgeSources;}
+
+    public int[] getEdgeTargets() {return edgeTargets;}
+}
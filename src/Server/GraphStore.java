@@ -0,0 +1,60 @@
+package Server;
+import java.util.PrimitiveIterator;
+
+/**
+ * Storage backend for the graph's adjacency lists.
+ * Implementations are not thread-safe: callers hold the graph write lock to mutate
+ * and the graph read lock to read.
+ */
+interface GraphStore {
+
+    /**
+     * Node ID that storage backends may use internally as a marker; the server never stores it.
+     */
+    int RESERVED_NODE = Integer.MIN_VALUE;
+
+    boolean containsNode(int node);
+
+    /**
+     * Add a node without edges.
+     *
+     * @return true if the node did not exist yet
+     */
+    boolean addNode(int node);
+
+    /**
+     * Add an edge between two existing nodes.
+     *
+     * @return true if the edge did not exist yet
+     */
+    boolean addEdge(int sourceNode, int targetNode);
+
+    /**
+     * Remove an edge.
+     *
+     * @return true if the edge existed
+     */
+    boolean removeEdge(int sourceNode, int targetNode);
+
+    /**
+     * Get the number of outgoing edges of a node, 0 if the node does not exist.
+     */
+    int degree(int node);
+
+    /**
+     * Iterate over the targets of a node's outgoing edges, empty if the node does not exist.
+     */
+    PrimitiveIterator.OfInt neighbors(int node);
+
+    /**
+     * Get the IDs of all nodes.
+     */
+    int[] nodes();
+
+    int nodeCount();
+
+    /**
+     * Remove every node and edge.
+     */
+    void clear();
+}
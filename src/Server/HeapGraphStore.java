@@ -0,0 +1,75 @@
+package Server;
+import java.util.*;
+
+/**
+ * Graph storage backed by a hash map of hash sets on the Java heap.
+ */
+class HeapGraphStore implements GraphStore {
+    private final Map<Integer, Set<Integer>> graph = new HashMap<>();  // Adjacency list representation of the graph
+
+    private static final PrimitiveIterator.OfInt EMPTY = new PrimitiveIterator.OfInt() {
+        @Override
+        public int nextInt() {throw new NoSuchElementException();}
+
+        @Override
+        public boolean hasNext() {return false;}
+    };
+
+    @Override
+    public boolean containsNode(int node) {
+        return graph.containsKey(node);
+    }
+
+    @Override
+    public boolean addNode(int node) {
+        return graph.putIfAbsent(node, new HashSet<>()) == null;
+    }
+
+    @Override
+    public boolean addEdge(int sourceNode, int targetNode) {
+        return graph.get(sourceNode).add(targetNode);
+    }
+
+    @Override
+    public boolean removeEdge(int sourceNode, int targetNode) {
+        Set<Integer> neighbors = graph.get(sourceNode);
+        return neighbors != null && neighbors.remove(targetNode);
+    }
+
+    @Override
+    public int degree(int node) {
+        Set<Integer> neighbors = graph.get(node);
+        return neighbors == null ? 0 : neighbors.size();
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt neighbors(int node) {
+        Set<Integer> neighbors = graph.get(node);
+        if (neighbors == null)
+            return EMPTY;
+
+        Iterator<Integer> iterator = neighbors.iterator();
+        return new PrimitiveIterator.OfInt() {
+            @Override
+            public int nextInt() {return iterator.next();}
+
+            @Override
+            public boolean hasNext() {return iterator.hasNext();}
+        };
+    }
+
+    @Override
+    public int[] nodes() {
+        return graph.keySet().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Override
+    public int nodeCount() {
+        return graph.size();
+    }
+
+    @Override
+    public void clear() {
+        graph.clear();
+    }
+}
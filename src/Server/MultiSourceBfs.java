@@ -0,0 +1,152 @@
+package Server;
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+
+/**
+ * Multi-source BFS (MS-BFS) computing distances from up to 64 sources in one traversal.
+ * <p>
+ * Each source owns one bit of a long. Every node keeps the set of sources that have already
+ * reached it and the set whose frontier it is on, so a node shared by many BFS trees is expanded
+ * once per level for all of them instead of once per source. Nodes get dense indices as they
+ * are first reached, so only the part of the graph the traversal touches is indexed.
+ */
+class MultiSourceBfs {
+    static final int MAX_SOURCES = Long.SIZE;
+
+    private MultiSourceBfs() {}
+
+    /**
+     * Compute the distances from every source to every target.
+     * Must be called with the graph read lock held.
+     *
+     * @param graph The graph storage
+     * @param sourceNodes Up to 64 source node IDs
+     * @param targetNodes The target node IDs
+     * @param event The event collecting the traversal's statistics
+     * @return One row per source, where row[i][j] is the distance from sourceNodes[i] to targetNodes[j], or -1 if no path exists
+     */
+    static int[][] distances(GraphStore graph, int[] sourceNodes, int[] targetNodes, ServerEvents.BfsEvent event) {
+        if (sourceNodes.length > MAX_SOURCES)
+            throw new IllegalArgumentException("At most " + MAX_SOURCES + " sources per traversal");
+
+        int[][] rows = new int[sourceNodes.length][targetNodes.length];
+        for (int i = 0; i < sourceNodes.length; i++) {
+            for (int j = 0; j < targetNodes.length; j++)
+                rows[i][j] = sourceNodes[i] == targetNodes[j] ? 0 : -1;
+        }
+
+        // Columns of each target node, chained so that duplicate targets are all filled
+        NodeIndex targetIndex = new NodeIndex(targetNodes.length);
+        int[] firstColumn = new int[targetNodes.length];
+        int[] nextColumn = new int[targetNodes.length];
+        for (int j = 0; j < targetNodes.length; j++) {
+            int t = targetIndex.indexOf(targetNodes[j]);
+            if (t < 0) {
+                t = targetIndex.add(targetNodes[j]);
+                firstColumn[t] = -1;
+            }
+            nextColumn[j] = firstColumn[t];
+            firstColumn[t] = j;
+        }
+
+        NodeIndex index = new NodeIndex(1024);
+        int capacity = 1024;
+        int[] nodeIds = new int[capacity];
+        long[] seen = new long[capacity];       // Sources that have reached each node
+        long[] visit = new long[capacity];      // Sources whose current frontier contains each node
+        long[] visitNext = new long[capacity];  // Sources whose next frontier contains each node
+        int[] frontier = new int[capacity];
+        int[] nextFrontier = new int[capacity];
+        int frontierSize = 0;
+
+        long allSources = 0;
+        for (int i = 0; i < sourceNodes.length; i++) {
+            if (!graph.containsNode(sourceNodes[i]))
+                continue;
+            int v = index.indexOf(sourceNodes[i]);
+            if (v < 0) {
+                v = index.add(sourceNodes[i]);
+                nodeIds[v] = sourceNodes[i];
+                frontier[frontierSize++] = v;
+            }
+            seen[v] |= 1L << i;
+            visit[v] |= 1L << i;
+            allSources |= 1L << i;
+        }
+
+        // Pairs still unresolved; a source only reaches targets that exist in the graph
+        long remaining = 0;
+        for (int t = 0; t < targetIndex.size(); t++) {
+            int target = targetNodes[firstColumn[t]];
+            if (graph.containsNode(target)) {
+                int v = index.indexOf(target);
+                remaining += Long.bitCount(allSources & ~(v < 0 ? 0 : seen[v]));
+            }
+        }
+
+        int level = 0;
+        while (frontierSize > 0 && remaining > 0) {
+            level++;
+            int nextSize = 0;
+
+            for (int f = 0; f < frontierSize; f++) {
+                int v = frontier[f];
+                long sources = visit[v];
+                visit[v] = 0;
+                event.nodesVisited++;
+
+                for (PrimitiveIterator.OfInt neighbors = graph.neighbors(nodeIds[v]); neighbors.hasNext(); ) {
+                    int neighbor = neighbors.nextInt();
+                    event.edgesScanned++;
+                    int n = index.indexOf(neighbor);
+                    if (n < 0) {
+                        n = index.add(neighbor);
+                        if (n == capacity) {
+                            capacity *= 2;
+                            nodeIds = Arrays.copyOf(nodeIds, capacity);
+                            seen = Arrays.copyOf(seen, capacity);
+                            visit = Arrays.copyOf(visit, capacity);
+                            visitNext = Arrays.copyOf(visitNext, capacity);
+                        }
+                        nodeIds[n] = neighbor;
+                    }
+                    long reached = sources & ~seen[n];
+                    if (reached == 0)
+                        continue;
+                    if (visitNext[n] == 0) {
+                        if (nextSize == nextFrontier.length)
+                            nextFrontier = Arrays.copyOf(nextFrontier, nextSize * 2);
+                        nextFrontier[nextSize++] = n;
+                    }
+                    visitNext[n] |= reached;
+                }
+            }
+
+            // Mark the new frontier as seen and record the distances of reached targets
+            for (int f = 0; f < nextSize; f++) {
+                int n = nextFrontier[f];
+                long reached = visitNext[n];
+                seen[n] |= reached;
+                visit[n] = reached;
+                visitNext[n] = 0;
+
+                int t = targetIndex.indexOf(nodeIds[n]);
+                if (t < 0)
+                    continue;
+                remaining -= Long.bitCount(reached);
+                for (long bits = reached; bits != 0; bits &= bits - 1) {
+                    int i = Long.numberOfTrailingZeros(bits);
+                    for (int j = firstColumn[t]; j >= 0; j = nextColumn[j])
+                        rows[i][j] = level;
+                }
+            }
+
+            int[] swap = frontier;
+            frontier = nextFrontier;
+            nextFrontier = swap;
+            frontierSize = nextSize;
+        }
+
+        return rows;
+    }
+}
@@ -0,0 +1,72 @@
+package Server;
+
+/**
+ * Open-addressing map from node IDs to dense indices, handed out in insertion order.
+ * Lets traversals keep per-node state in plain int or long arrays instead of boxed maps.
+ */
+class NodeIndex {
+    private int[] keys;
+    private int[] values;                       // Index + 1 per entry, 0 marks an empty entry
+    private int size;
+
+    NodeIndex(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        this.keys = new int[capacity];
+        this.values = new int[capacity];
+    }
+
+    /**
+     * @return The node's index, or -1 if the node has not been added
+     */
+    int indexOf(int node) {
+        int mask = keys.length - 1;
+        for (int i = hash(node) & mask; ; i = (i + 1) & mask) {
+            int value = values[i];
+            if (value == 0)
+                return -1;
+            if (keys[i] == node)
+                return value - 1;
+        }
+    }
+
+    /**
+     * Add a node that is not in the index yet.
+     *
+     * @return The node's new index, which is the number of nodes added before it
+     */
+    int add(int node) {
+        if ((size + 1) * 2 > keys.length)
+            resize(keys.length * 2);
+        insert(node, size);
+        return size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void insert(int node, int index) {
+        int mask = keys.length - 1;
+        int i = hash(node) & mask;
+        while (values[i] != 0)
+            i = (i + 1) & mask;
+        keys[i] = node;
+        values[i] = index + 1;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[capacity];
+        values = new int[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != 0)
+                insert(oldKeys[i], oldValues[i] - 1);
+        }
+    }
+
+    private static int hash(int node) {
+        int h = node * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
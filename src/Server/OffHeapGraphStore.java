@@ -0,0 +1,416 @@
+package Server;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Graph storage kept outside the Java heap, so heap usage and GC time do not grow with the graph.
+ * <p>
+ * Three off-heap regions are used, each a {@link SegmentedBuffer}:
+ * <ul>
+ *     <li>an open-addressing hash table mapping node IDs to dense node slots,</li>
+ *     <li>a node table holding, per slot, the node ID and the address, length and capacity of its edge list,</li>
+ *     <li>an edge arena holding the edge lists, optionally memory-mapped from a file.</li>
+ * </ul>
+ * Edge lists live in power-of-two sized blocks handed out by a small allocator. A full block is
+ * replaced by one twice as large and the old block goes on a free list for its size class.
+ * <p>
+ * Small edge lists are plain arrays searched linearly. Once a node has more than
+ * {@value #HASHED_DEGREE} edges its block becomes an open-addressing hash set of targets, so
+ * duplicate checks and removals stay constant time for hub nodes. The reserved node ID marks
+ * empty entries in these sets and cannot be an edge target.
+ * <p>
+ * The store is limited by memory rather than by buffer sizes: up to Integer.MAX_VALUE nodes, and
+ * up to 2^25 edges per node. Without a backing file all three regions count against -XX:MaxDirectMemorySize.
+ */
+class OffHeapGraphStore implements GraphStore {
+    private SegmentedBuffer index;              // Hash table entries of [node ID, slot + 1], 0 marks an empty entry
+    private long indexCapacity;
+    private SegmentedBuffer nodeTable;          // Node slots of [node ID, degree, capacity, flags, edge list address]
+    private int nodeCount;
+    private SegmentedBuffer arena;              // Edge lists, addressed in ints
+    private long arenaTop;                      // Next free address in the arena, in ints
+    private final long[] freeLists = new long[32];                  // Head address of the free blocks of each size class, -1 if none
+    private final FileChannel arenaFile;        // File backing the arena, null for direct memory
+
+    private static final int TABLE_SEGMENT_SHIFT = 26;  // 64MB per index and node table segment
+    private static final int ARENA_SEGMENT_SHIFT = 28;  // 256MB per arena segment
+    private static final int SEGMENT_INTS = 1 << (ARENA_SEGMENT_SHIFT - 2);   // Also the largest edge block
+    private static final int NODE_BYTES = 24;
+    private static final int NODE_ID = 0;
+    private static final int NODE_DEGREE = 4;
+    private static final int NODE_CAPACITY = 8;
+    private static final int NODE_FLAGS = 12;
+    private static final int NODE_ADDRESS = 16;
+    private static final int FLAG_HASHED = 1;           // The edge block is a hash set rather than a list
+    private static final int INDEX_BYTES = 8;
+    private static final int MIN_BLOCK_INTS = 2;        // A free block stores the next free address in its first two ints
+    private static final int HASHED_DEGREE = 32;
+    private static final int EMPTY = RESERVED_NODE;
+
+    /**
+     * Create a store whose edge arena lives in direct memory.
+     */
+    OffHeapGraphStore() {
+        this.arenaFile = null;
+        clear();
+    }
+
+    /**
+     * Create a store whose edge arena is memory-mapped from a file.
+     * The file is overwritten; its contents are only valid while the server is running.
+     */
+    OffHeapGraphStore(Path arenaPath) throws IOException {
+        this.arenaFile = FileChannel.open(arenaPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        clear();
+    }
+
+    @Override
+    public boolean containsNode(int node) {
+        return slotOf(node) >= 0;
+    }
+
+    @Override
+    public boolean addNode(int node) {
+        if (slotOf(node) >= 0)
+            return false;
+        if (nodeCount == Integer.MAX_VALUE)
+            throw new IllegalStateException("Node table is full");
+
+        // Grow both tables before changing anything, so a failed allocation leaves the store intact
+        if ((nodeCount + 1L) * 2 > indexCapacity)
+            resizeIndex(indexCapacity * 2);
+        nodeTable.ensureCapacity((nodeCount + 1L) * NODE_BYTES);
+
+        int slot = nodeCount++;
+        long base = nodeBase(slot);
+        nodeTable.putInt(base + NODE_ID, node);
+        nodeTable.putInt(base + NODE_DEGREE, 0);
+        nodeTable.putInt(base + NODE_CAPACITY, 0);
+        nodeTable.putInt(base + NODE_FLAGS, 0);
+        nodeTable.putLong(base + NODE_ADDRESS, -1);
+        insertIndex(index, indexCapacity, node, slot);
+        return true;
+    }
+
+    @Override
+    public boolean addEdge(int sourceNode, int targetNode) {
+        if (targetNode == EMPTY)
+            throw new IllegalArgumentException("Node ID " + EMPTY + " cannot be an edge target");
+        int slot = slotOf(sourceNode);
+        if (slot < 0)
+            return false;
+
+        long base = nodeBase(slot);
+        int degree = nodeTable.getInt(base + NODE_DEGREE);
+        if ((nodeTable.getInt(base + NODE_FLAGS) & FLAG_HASHED) != 0)
+            return addHashedEdge(base, degree, targetNode);
+        if (find(base, targetNode) >= 0)
+            return false;
+
+        if (degree == HASHED_DEGREE) {
+            // Turn the list into a hash set, sized for a load factor of at most 1/2
+            long address = nodeTable.getLong(base + NODE_ADDRESS);
+            int capacity = nodeTable.getInt(base + NODE_CAPACITY);
+            rehash(base, address, capacity, degree, false, 4 * HASHED_DEGREE);
+            free(address, capacity);
+            return addHashedEdge(base, degree, targetNode);
+        }
+
+        int capacity = nodeTable.getInt(base + NODE_CAPACITY);
+        long address = nodeTable.getLong(base + NODE_ADDRESS);
+        if (degree == capacity) {
+            // Move the edge list to a block twice as large
+            int newCapacity = Math.max(MIN_BLOCK_INTS, capacity * 2);
+            long newAddress = allocate(newCapacity);
+            for (int i = 0; i < degree; i++)
+                putInt(newAddress + i, getInt(address + i));
+            if (capacity > 0)
+                free(address, capacity);
+            address = newAddress;
+            nodeTable.putInt(base + NODE_CAPACITY, newCapacity);
+            nodeTable.putLong(base + NODE_ADDRESS, newAddress);
+        }
+
+        putInt(address + degree, targetNode);
+        nodeTable.putInt(base + NODE_DEGREE, degree + 1);
+        return true;
+    }
+
+    @Override
+    public boolean removeEdge(int sourceNode, int targetNode) {
+        int slot = slotOf(sourceNode);
+        if (slot < 0 || targetNode == EMPTY)
+            return false;
+
+        long base = nodeBase(slot);
+        if ((nodeTable.getInt(base + NODE_FLAGS) & FLAG_HASHED) != 0)
+            return removeHashedEdge(base, targetNode);
+
+        int position = find(base, targetNode);
+        if (position < 0)
+            return false;
+
+        // Move the last edge into the hole
+        int degree = nodeTable.getInt(base + NODE_DEGREE) - 1;
+        long address = nodeTable.getLong(base + NODE_ADDRESS);
+        putInt(address + position, getInt(address + degree));
+        nodeTable.putInt(base + NODE_DEGREE, degree);
+        return true;
+    }
+
+    @Override
+    public int degree(int node) {
+        int slot = slotOf(node);
+        return slot < 0 ? 0 : nodeTable.getInt(nodeBase(slot) + NODE_DEGREE);
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt neighbors(int node) {
+        int slot = slotOf(node);
+        long base = slot < 0 ? 0 : nodeBase(slot);
+        int degree = slot < 0 ? 0 : nodeTable.getInt(base + NODE_DEGREE);
+        long address = slot < 0 ? 0 : nodeTable.getLong(base + NODE_ADDRESS);
+        // A hash set block is scanned in full, skipping empty entries
+        boolean hashed = slot >= 0 && (nodeTable.getInt(base + NODE_FLAGS) & FLAG_HASHED) != 0;
+        int end = hashed ? nodeTable.getInt(base + NODE_CAPACITY) : degree;
+
+        return new PrimitiveIterator.OfInt() {
+            private int position = 0;
+            private int remaining = degree;
+
+            @Override
+            public int nextInt() {
+                if (remaining == 0)
+                    throw new NoSuchElementException();
+                int target = getInt(address + position++);
+                while (hashed && target == EMPTY)
+                    target = getInt(address + position++);
+                remaining--;
+                return target;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0 && position < end;
+            }
+        };
+    }
+
+    @Override
+    public int[] nodes() {
+        int[] nodes = new int[nodeCount];
+        for (int slot = 0; slot < nodeCount; slot++)
+            nodes[slot] = nodeTable.getInt(nodeBase(slot) + NODE_ID);
+        return nodes;
+    }
+
+    @Override
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    public void clear() {
+        indexCapacity = 1024;
+        index = new SegmentedBuffer(TABLE_SEGMENT_SHIFT, indexCapacity * INDEX_BYTES, null);
+        nodeTable = new SegmentedBuffer(TABLE_SEGMENT_SHIFT, 512 * NODE_BYTES, null);
+        nodeCount = 0;
+        arena = new SegmentedBuffer(ARENA_SEGMENT_SHIFT, 0, arenaFile);
+        arenaTop = 0;
+        Arrays.fill(freeLists, -1);
+    }
+
+    private static long nodeBase(int slot) {
+        return (long) slot * NODE_BYTES;
+    }
+
+    /**
+     * Find the position of a target in a node's edge list.
+     *
+     * @return The position, or -1 if the edge does not exist
+     */
+    private int find(long base, int targetNode) {
+        int degree = nodeTable.getInt(base + NODE_DEGREE);
+        long address = nodeTable.getLong(base + NODE_ADDRESS);
+        for (int i = 0; i < degree; i++) {
+            if (getInt(address + i) == targetNode)
+                return i;
+        }
+        return -1;
+    }
+
+    private boolean addHashedEdge(long base, int degree, int targetNode) {
+        int capacity = nodeTable.getInt(base + NODE_CAPACITY);
+        long address = nodeTable.getLong(base + NODE_ADDRESS);
+        if ((degree + 1L) * 2 > capacity) {
+            if (capacity == SEGMENT_INTS)
+                throw new IllegalStateException("Node " + nodeTable.getInt(base + NODE_ID) + " has too many edges");
+            rehash(base, address, capacity, degree, true, capacity * 2);
+            free(address, capacity);
+            capacity *= 2;
+            address = nodeTable.getLong(base + NODE_ADDRESS);
+        }
+
+        int mask = capacity - 1;
+        for (int i = hash(targetNode) & mask; ; i = (i + 1) & mask) {
+            int entry = getInt(address + i);
+            if (entry == targetNode)
+                return false;
+            if (entry == EMPTY) {
+                putInt(address + i, targetNode);
+                nodeTable.putInt(base + NODE_DEGREE, degree + 1);
+                return true;
+            }
+        }
+    }
+
+    private boolean removeHashedEdge(long base, int targetNode) {
+        int capacity = nodeTable.getInt(base + NODE_CAPACITY);
+        long address = nodeTable.getLong(base + NODE_ADDRESS);
+        int mask = capacity - 1;
+        int hole = hash(targetNode) & mask;
+        while (true) {
+            int entry = getInt(address + hole);
+            if (entry == EMPTY)
+                return false;
+            if (entry == targetNode)
+                break;
+            hole = (hole + 1) & mask;
+        }
+
+        // Shift later entries of the probe run back into the hole, so lookups never stop early
+        for (int i = (hole + 1) & mask; ; i = (i + 1) & mask) {
+            int entry = getInt(address + i);
+            if (entry == EMPTY)
+                break;
+            int home = hash(entry) & mask;
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                putInt(address + hole, entry);
+                hole = i;
+            }
+        }
+        putInt(address + hole, EMPTY);
+        nodeTable.putInt(base + NODE_DEGREE, nodeTable.getInt(base + NODE_DEGREE) - 1);
+        return true;
+    }
+
+    /**
+     * Copy a node's edges into a new hash set block and point the node at it.
+     * The old block is left for the caller to free.
+     */
+    private void rehash(long base, long address, int capacity, int degree, boolean hashed, int newCapacity) {
+        long newAddress = allocate(newCapacity);
+        for (int i = 0; i < newCapacity; i++)
+            putInt(newAddress + i, EMPTY);
+
+        int mask = newCapacity - 1;
+        int end = hashed ? capacity : degree;
+        for (int p = 0; p < end; p++) {
+            int target = getInt(address + p);
+            if (target == EMPTY)
+                continue;
+            int i = hash(target) & mask;
+            while (getInt(newAddress + i) != EMPTY)
+                i = (i + 1) & mask;
+            putInt(newAddress + i, target);
+        }
+
+        nodeTable.putInt(base + NODE_CAPACITY, newCapacity);
+        nodeTable.putInt(base + NODE_FLAGS, FLAG_HASHED);
+        nodeTable.putLong(base + NODE_ADDRESS, newAddress);
+    }
+
+    /**
+     * Look up the slot of a node in the hash table.
+     *
+     * @return The node's slot, or -1 if the node does not exist
+     */
+    private int slotOf(int node) {
+        long mask = indexCapacity - 1;
+        for (long i = hash(node) & mask; ; i = (i + 1) & mask) {
+            int value = index.getInt(i * INDEX_BYTES + 4);
+            if (value == 0)
+                return -1;
+            if (index.getInt(i * INDEX_BYTES) == node)
+                return value - 1;
+        }
+    }
+
+    private static void insertIndex(SegmentedBuffer index, long capacity, int node, int slot) {
+        long mask = capacity - 1;
+        long i = hash(node) & mask;
+        while (index.getInt(i * INDEX_BYTES + 4) != 0)
+            i = (i + 1) & mask;
+        index.putInt(i * INDEX_BYTES, node);
+        index.putInt(i * INDEX_BYTES + 4, slot + 1);
+    }
+
+    /**
+     * Rebuild the hash table at a new capacity. The current table stays in place until the new one is complete.
+     */
+    private void resizeIndex(long capacity) {
+        SegmentedBuffer resized = new SegmentedBuffer(TABLE_SEGMENT_SHIFT, capacity * INDEX_BYTES, null);
+        for (int slot = 0; slot < nodeCount; slot++)
+            insertIndex(resized, capacity, nodeTable.getInt(nodeBase(slot) + NODE_ID), slot);
+        index = resized;
+        indexCapacity = capacity;
+    }
+
+    private static int hash(int node) {
+        int h = node * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & Integer.MAX_VALUE;
+    }
+
+    /**
+     * Allocate an edge block of a power-of-two number of ints, reusing a freed block if possible.
+     *
+     * @return The block's address in the arena, in ints
+     */
+    private long allocate(int ints) {
+        int sizeClass = Integer.numberOfTrailingZeros(ints);
+        long address = freeLists[sizeClass];
+        if (address >= 0) {
+            freeLists[sizeClass] = getLong(address);
+            return address;
+        }
+        if (ints > SEGMENT_INTS)
+            throw new IllegalStateException("Edge block of " + ints + " ints exceeds the arena segment size");
+
+        // Blocks never straddle segments: skip the rest of the current segment if needed
+        long top = arenaTop;
+        long offset = top % SEGMENT_INTS;
+        if (offset + ints > SEGMENT_INTS)
+            top += SEGMENT_INTS - offset;
+        arena.ensureCapacity((top + ints) * 4);
+        arenaTop = top + ints;
+        return top;
+    }
+
+    private void free(long address, int ints) {
+        int sizeClass = Integer.numberOfTrailingZeros(ints);
+        putLong(address, freeLists[sizeClass]);
+        freeLists[sizeClass] = address;
+    }
+
+    private int getInt(long address) {
+        return arena.getInt(address * 4);
+    }
+
+    private void putInt(long address, int value) {
+        arena.putInt(address * 4, value);
+    }
+
+    private long getLong(long address) {
+        return arena.getLong(address * 4);
+    }
+
+    private void putLong(long address, long value) {
+        arena.putLong(address * 4, value);
+    }
+}
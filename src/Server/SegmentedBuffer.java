@@ -0,0 +1,94 @@
+package Server;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Growable off-heap memory addressed by long byte offsets.
+ * <p>
+ * The memory is split into fixed-size segments, so it is not limited to the 2GB of a single
+ * ByteBuffer. Segments are direct buffers, or regions memory-mapped from a file. A direct
+ * buffer smaller than one segment starts small and doubles until it reaches the segment size.
+ * Values must be aligned to their own size, so that none straddles two segments.
+ */
+class SegmentedBuffer {
+    private final int segmentShift;
+    private final long segmentMask;
+    private final FileChannel file;             // File the segments are mapped from, null for direct memory
+    private final List<ByteBuffer> segments = new ArrayList<>();
+
+    private static final int MIN_BYTES = 4096;
+
+    /**
+     * @param segmentShift The base-2 logarithm of the segment size in bytes, at most 30
+     * @param initialBytes The capacity to allocate up front
+     * @param file The file to map segments from, or null for direct memory
+     */
+    SegmentedBuffer(int segmentShift, long initialBytes, FileChannel file) {
+        this.segmentShift = segmentShift;
+        this.segmentMask = (1L << segmentShift) - 1;
+        this.file = file;
+        ensureCapacity(initialBytes);
+    }
+
+    long capacity() {
+        if (segments.size() == 1)
+            return segments.get(0).capacity();
+        return (long) segments.size() << segmentShift;
+    }
+
+    /**
+     * Grow the memory to at least the given number of bytes. New memory reads as zeros.
+     * If allocation fails the buffer is left unchanged.
+     */
+    void ensureCapacity(long bytes) {
+        long segmentBytes = 1L << segmentShift;
+        if (file == null && segments.size() <= 1 && capacity() < segmentBytes && bytes > capacity()) {
+            // Grow the single small buffer by doubling
+            long size = Math.max(MIN_BYTES, capacity());
+            while (size < Math.min(bytes, segmentBytes))
+                size *= 2;
+            ByteBuffer grown = allocateDirect((int) Math.min(size, segmentBytes));
+            if (!segments.isEmpty())
+                grown.put(segments.get(0).duplicate().clear());
+            segments.clear();
+            segments.add(grown.clear());
+        }
+        while (capacity() < bytes)
+            segments.add(newSegment(segments.size()));
+    }
+
+    int getInt(long offset) {
+        return segments.get((int) (offset >>> segmentShift)).getInt((int) (offset & segmentMask));
+    }
+
+    void putInt(long offset, int value) {
+        segments.get((int) (offset >>> segmentShift)).putInt((int) (offset & segmentMask), value);
+    }
+
+    long getLong(long offset) {
+        return segments.get((int) (offset >>> segmentShift)).getLong((int) (offset & segmentMask));
+    }
+
+    void putLong(long offset, long value) {
+        segments.get((int) (offset >>> segmentShift)).putLong((int) (offset & segmentMask), value);
+    }
+
+    private ByteBuffer newSegment(int segmentIndex) {
+        if (file == null)
+            return allocateDirect(1 << segmentShift);
+        try {
+            return file.map(FileChannel.MapMode.READ_WRITE, (long) segmentIndex << segmentShift, 1L << segmentShift)
+                    .order(ByteOrder.nativeOrder());
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot map segment " + segmentIndex, e);
+        }
+    }
+
+    private static ByteBuffer allocateDirect(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+}
@@ -0,0 +1,74 @@
+package Server;
+import jdk.jfr.*;
+
+/**
+ * Custom JFR events emitted by the server.
+ * They are recorded whenever a JFR recording is running, e.g. with -XX:StartFlightRecording,
+ * and show up in JDK Mission Control under the "GSP" category.
+ */
+final class ServerEvents {
+
+    private ServerEvents() {}
+
+    @Name("gsp.Bfs")
+    @Label("BFS Traversal")
+    @Category("GSP")
+    @Description("A breadth-first search answering a shortest path query")
+    static class BfsEvent extends Event {
+        @Label("Source Node")
+        int sourceNode;
+
+        @Label("Target Node")
+        int targetNode;
+
+        @Label("Distance")
+        int distance;
+
+        @Label("Nodes Visited")
+        long nodesVisited;
+
+        @Label("Edges Scanned")
+        long edgesScanned;
+
+        @Label("Used Layout")
+        boolean usedLayout;
+
+        @Label("Shared")
+        @Description("Answered by another query's traversal")
+        boolean shared;
+    }
+
+    @Name("gsp.Batch")
+    @Label("Batch")
+    @Category("GSP")
+    @Description("Processing of one batch of operations")
+    static class BatchEvent extends Event {
+        @Label("Operations")
+        int operations;
+
+        @Label("Queries")
+        int queries;
+    }
+
+    @Name("gsp.LockWait")
+    @Label("Graph Lock Wait")
+    @Category("GSP")
+    @Description("Time spent waiting to acquire the graph lock")
+    @Threshold("1 ms")
+    static class LockWaitEvent extends Event {
+        @Label("Write Lock")
+        boolean write;
+    }
+
+    @Name("gsp.GraphLoad")
+    @Label("Graph Load")
+    @Category("GSP")
+    @Description("Loading of the initial graph or a replica snapshot")
+    static class GraphLoadEvent extends Event {
+        @Label("Source")
+        String source;
+
+        @Label("Nodes")
+        int nodes;
+    }
+}
@@ -1,6 +1,7 @@
 package Server;
 
 import java.io.*;
+import java.nio.file.Paths;
 import java.util.Properties;
 
 /**
@@ -21,29 +22,64 @@ public class ServerMain {
         try (InputStream input = new FileInputStream(propertiesFile)) {
             prop.load(input);
 
+            // GSP.* system properties override the file, so one file can serve several servers
+            for (String name : System.getProperties().stringPropertyNames()) {
+                if (name.startsWith("GSP."))
+                    prop.setProperty(name, System.getProperty(name));
+            }
+
             // Server configuration
             String serverAddress = prop.getProperty("GSP.server");
             int serverPort = Integer.parseInt(prop.getProperty("GSP.server.port"));
             int rmiRegistryPort = Integer.parseInt(prop.getProperty("GSP.rmiRegistry.port"));
+            boolean replica = prop.getProperty("GSP.role", "primary").equalsIgnoreCase("replica");
 
             // Print server configuration
             System.out.println("Starting GSP Server with configuration:");
             System.out.println("Server Address: " + serverAddress);
             System.out.println("Server Port: " + serverPort);
             System.out.println("RMI Registry Port: " + rmiRegistryPort);
+            System.out.println("Role: " + (replica ? "replica" : "primary"));
 
             // Create and start the server
-            GSPServer server = new GSPServer(serverAddress, serverPort, rmiRegistryPort);
+            GraphStore graphStore = createGraphStore(prop);
+            GSPServer server = new GSPServer(serverAddress, serverPort, rmiRegistryPort, graphStore);
+            // A replica must reject reads and writes from the moment it is bound in the registry
+            server.setReplica(replica);
+            String layoutOrder = prop.getProperty("GSP.layout", "none");
+            if (!layoutOrder.equalsIgnoreCase("none")) {
+                // The layout is a heap copy of the whole graph, which would undo off-heap storage
+                if (graphStore instanceof OffHeapGraphStore)
+                    System.out.println("Warning: GSP.layout is ignored with off-heap storage");
+                else
+                    server.setLayoutOrder(GraphLayout.Order.valueOf(layoutOrder.toUpperCase()));
+            }
             server.start();
 
+            int metricsPort = Integer.parseInt(prop.getProperty("GSP.metrics.port", "0"));
+            if (metricsPort > 0) {
+                String metricsAddress = prop.getProperty("GSP.metrics.address", "127.0.0.1");
+                server.startMetricsEndpoint(metricsAddress, metricsPort);
+                System.out.println("Metrics Endpoint: http://" + metricsAddress + ":" + metricsPort + "/metrics");
+            }
+
             // Print server started message
             System.out.println("Server started successfully");
 
-            // Initialize the graph
-            server.handleInitialGraph(initialGraphFile);
+            if (replica) {
+                // Replicas copy the graph from the primary and follow its changes
+                String primaryAddress = prop.getProperty("GSP.primary");
+                int primaryRegistryPort = Integer.parseInt(prop.getProperty("GSP.primary.rmiRegistry.port"));
+                server.startReplication(primaryAddress, primaryRegistryPort);
+                System.out.println("Replicating from primary at " + primaryAddress + ":" + primaryRegistryPort);
+            } else {
+                // Initialize the graph
+                server.handleInitialGraph(initialGraphFile);
+                server.rebuildLayout();
 
-            // Signal ready to receive workload
-            System.out.println("Initial graph loaded. Server is ready to receive workload.");
+                // Signal ready to receive workload
+                System.out.println("Initial graph loaded. Server is ready to receive workload.");
+            }
 
             // User-Server interaction
             System.out.println("\nEnter 'P' to display the performance of the server.");
@@ -74,4 +110,16 @@ public class ServerMain {
             System.exit(0);
         }
     }
+
+    /**
+     * Create the graph storage backend selected by GSP.storage.
+     */
+    private static GraphStore createGraphStore(Properties prop) throws IOException {
+        if (!prop.getProperty("GSP.storage", "heap").equalsIgnoreCase("offheap"))
+            return new HeapGraphStore();
+
+        String arenaFile = prop.getProperty("GSP.storage.file", "").trim();
+        System.out.println("Graph storage: off-heap" + (arenaFile.isEmpty() ? "" : ", edges mapped from " + arenaFile));
+        return arenaFile.isEmpty() ? new OffHeapGraphStore() : new OffHeapGraphStore(Paths.get(arenaFile));
+    }
 }
\ No newline at end of file
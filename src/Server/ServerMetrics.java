@@ -0,0 +1,165 @@
+package Server;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Live server counters and latency histograms, served over HTTP in the Prometheus text format.
+ * Recording only touches striped counters, so it is cheap enough for every query.
+ */
+class ServerMetrics {
+    final LongAdder bfsTraversals = new LongAdder();
+    final LongAdder nodesVisited = new LongAdder();
+    final LongAdder edgesScanned = new LongAdder();
+    final LongAdder sharedQueries = new LongAdder();
+    final LongAdder treeCacheHits = new LongAdder();
+    final LongAdder treeCacheMisses = new LongAdder();
+    final LongAdder readLockWaitNanos = new LongAdder();
+    final LongAdder writeLockWaitNanos = new LongAdder();
+    final Histogram queryLatency = new Histogram();
+    final Histogram batchLatency = new Histogram();
+    private LongSupplier graphVersion = () -> 0;
+    private LongSupplier nodeCount = () -> 0;
+    private Map<String, Integer> operationCounts = Collections.emptyMap();
+    private HttpServer httpServer;
+
+    /**
+     * Latency histogram with fixed exponential buckets, in microseconds.
+     */
+    static class Histogram {
+        private static final long[] BOUNDS = {10, 50, 100, 500, 1_000, 5_000, 10_000, 50_000, 100_000, 500_000, 1_000_000};
+        private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+        private final LongAdder sumMicros = new LongAdder();
+
+        Histogram() {
+            for (int i = 0; i < buckets.length; i++)
+                buckets[i] = new LongAdder();
+        }
+
+        void record(long nanos) {
+            long micros = nanos / 1000;
+            int i = 0;
+            while (i < BOUNDS.length && micros > BOUNDS[i])
+                i++;
+            buckets[i].increment();
+            sumMicros.add(micros);
+        }
+
+        private void render(StringBuilder out, String name, String help) {
+            out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+            out.append("# TYPE ").append(name).append(" histogram\n");
+            long cumulative = 0;
+            for (int i = 0; i < BOUNDS.length; i++) {
+                cumulative += buckets[i].sum();
+                out.append(name).append("_bucket{le=\"").append(BOUNDS[i] / 1e6).append("\"} ").append(cumulative).append('\n');
+            }
+            cumulative += buckets[BOUNDS.length].sum();
+            out.append(name).append("_bucket{le=\"+Inf\"} ").append(cumulative).append('\n');
+            out.append(name).append("_sum ").append(sumMicros.sum() / 1e6).append('\n');
+            out.append(name).append("_count ").append(cumulative).append('\n');
+        }
+    }
+
+    /**
+     * Set the sources of the values the server already tracks elsewhere.
+     *
+     * @param graphVersion The current graph version
+     * @param nodeCount The current number of nodes
+     * @param operationCounts The server's operation counts, by operation type
+     */
+    void setSources(LongSupplier graphVersion, LongSupplier nodeCount, Map<String, Integer> operationCounts) {
+        this.graphVersion = graphVersion;
+        this.nodeCount = nodeCount;
+        this.operationCounts = operationCounts;
+    }
+
+    void recordBfs(long visited, long scanned) {
+        bfsTraversals.increment();
+        nodesVisited.add(visited);
+        edgesScanned.add(scanned);
+    }
+
+    void recordLockWait(boolean write, long nanos) {
+        (write ? writeLockWaitNanos : readLockWaitNanos).add(nanos);
+    }
+
+    /**
+     * Render every metric in the Prometheus text exposition format.
+     */
+    String render() {
+        StringBuilder out = new StringBuilder();
+        gauge(out, "gsp_graph_nodes", "Number of nodes in the graph", nodeCount.getAsLong());
+        gauge(out, "gsp_graph_version", "Sequence number of the latest edge change", graphVersion.getAsLong());
+        out.append("# HELP gsp_operations_total Operations processed by type\n");
+        out.append("# TYPE gsp_operations_total counter\n");
+        for (String type : new String[]{"query", "add", "delete"})
+            out.append("gsp_operations_total{type=\"").append(type).append("\"} ").append(operationCounts.getOrDefault(type, 0)).append('\n');
+        counter(out, "gsp_bfs_traversals_total", "BFS traversals run", bfsTraversals.sum());
+        counter(out, "gsp_bfs_nodes_visited_total", "Nodes visited by BFS traversals", nodesVisited.sum());
+        counter(out, "gsp_bfs_edges_scanned_total", "Edges scanned by BFS traversals", edgesScanned.sum());
+        counter(out, "gsp_shared_queries_total", "Queries answered by another query's traversal", sharedQueries.sum());
+        counter(out, "gsp_bfs_tree_cache_hits_total", "Queries that reused a cached BFS tree", treeCacheHits.sum());
+        counter(out, "gsp_bfs_tree_cache_misses_total", "Queries that had to start a new BFS tree", treeCacheMisses.sum());
+        out.append("# HELP gsp_lock_wait_seconds_total Time spent waiting for the graph lock\n");
+        out.append("# TYPE gsp_lock_wait_seconds_total counter\n");
+        out.append("gsp_lock_wait_seconds_total{lock=\"read\"} ").append(readLockWaitNanos.sum() / 1e9).append('\n');
+        out.append("gsp_lock_wait_seconds_total{lock=\"write\"} ").append(writeLockWaitNanos.sum() / 1e9).append('\n');
+        queryLatency.render(out, "gsp_query_duration_seconds", "Shortest path query latency");
+        batchLatency.render(out, "gsp_batch_duration_seconds", "Batch processing latency");
+
+        out.append("# HELP gsp_gc_collections_total Garbage collections per collector\n");
+        out.append("# TYPE gsp_gc_collections_total counter\n");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            out.append("gsp_gc_collections_total{collector=\"").append(gc.getName()).append("\"} ").append(gc.getCollectionCount()).append('\n');
+        out.append("# HELP gsp_gc_seconds_total Time spent in garbage collection per collector\n");
+        out.append("# TYPE gsp_gc_seconds_total counter\n");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            out.append("gsp_gc_seconds_total{collector=\"").append(gc.getName()).append("\"} ").append(gc.getCollectionTime() / 1e3).append('\n');
+        gauge(out, "gsp_heap_used_bytes", "Used Java heap", ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+        return out.toString();
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" gauge\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Serve the metrics at http://address:port/metrics.
+     *
+     * @param address The local address to bind, e.g. 127.0.0.1 to only serve local scrapers
+     * @param port The HTTP port
+     */
+    void startEndpoint(String address, int port) throws IOException {
+        httpServer = HttpServer.create(new InetSocketAddress(address, port), 0);
+        httpServer.createContext("/metrics", exchange -> {
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        });
+        httpServer.start();
+    }
+
+    void stopEndpoint() {
+        if (httpServer != null)
+            httpServer.stop(0);
+    }
+}
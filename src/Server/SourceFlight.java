@@ -0,0 +1,115 @@
+package Server;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * A BFS in progress from one source node, shared with concurrent queries from the same source.
+ * <p>
+ * The query that starts the BFS leads the flight. Other queries from the same source, at the
+ * same graph version, attach their target and wait. The leader completes each waiter as soon as
+ * its BFS reaches that waiter's target, and keeps traversing past its own target while waiters
+ * remain.
+ */
+class SourceFlight {
+    private final int sourceNode;
+    private final long version;                 // Graph version the traversal runs against
+    private final Map<Integer, CompletableFuture<Integer>> waiters = new ConcurrentHashMap<>();
+    private volatile boolean attachedSinceScan; // True if waiters attached after the leader last looked for visited targets
+    private boolean closed;                     // Guarded by this; no waiter may attach once closed
+
+    SourceFlight(int sourceNode, long version) {
+        this.sourceNode = sourceNode;
+        this.version = version;
+    }
+
+    int getSourceNode() {return sourceNode;}
+
+    long getVersion() {return version;}
+
+    /**
+     * Attach a query for the given target to this flight.
+     *
+     * @return A future completed with the target's distance, or null if the flight already finished
+     */
+    synchronized CompletableFuture<Integer> attach(int targetNode) {
+        if (closed)
+            return null;
+        CompletableFuture<Integer> waiter = waiters.computeIfAbsent(targetNode, k -> new CompletableFuture<>());
+        attachedSinceScan = true;
+        return waiter;
+    }
+
+    /**
+     * Whether any query is waiting on this flight. Cheap enough to call for every visited node.
+     */
+    boolean hasWaiters() {
+        return !waiters.isEmpty();
+    }
+
+    /**
+     * Called by the leader when its BFS first reaches a node.
+     */
+    void reached(int node, int distance) {
+        CompletableFuture<Integer> waiter = waiters.remove(node);
+        if (waiter != null)
+            waiter.complete(distance);
+    }
+
+    /**
+     * Called by the leader before expanding each node: complete newly attached waiters
+     * whose target the BFS had already reached before they attached.
+     *
+     * @param distanceOf The BFS distance of a node so far, or -1 if not reached yet
+     */
+    void resolveReached(IntUnaryOperator distanceOf) {
+        if (!attachedSinceScan)
+            return;
+        attachedSinceScan = false;
+        for (int target : waiters.keySet()) {
+            int distance = distanceOf.applyAsInt(target);
+            if (distance >= 0)
+                reached(target, distance);
+        }
+    }
+
+    /**
+     * Called by the leader once it has its own answer: close the flight if nobody is waiting.
+     *
+     * @return true if the leader may stop its BFS
+     */
+    synchronized boolean tryClose() {
+        if (!waiters.isEmpty())
+            return false;
+        closed = true;
+        return true;
+    }
+
+    /**
+     * Called by the leader when its BFS has visited everything reachable, or failed:
+     * close the flight and complete every remaining waiter.
+     *
+     * @param distanceOf The final BFS distance of a node, or -1 if unreachable
+     */
+    void close(IntUnaryOperator distanceOf) {
+        synchronized (this) {
+            closed = true;
+        }
+        for (Map.Entry<Integer, CompletableFuture<Integer>> entry : waiters.entrySet())
+            entry.getValue().complete(distanceOf.applyAsInt(entry.getKey()));
+        waiters.clear();
+    }
+
+    /**
+     * Close the flight after the leader failed, so waiters run their own BFS instead.
+     */
+    void abandon(Throwable cause) {
+        synchronized (this) {
+            closed = true;
+        }
+        for (CompletableFuture<Integer> waiter : waiters.values())
+            waiter.completeExceptionally(cause);
+        waiters.clear();
+    }
+}
@@ -0,0 +1,26 @@
+package Server;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * State of one change-stream subscriber: its watched pairs and its lease.
+ * The lease is renewed by every call the subscriber makes; a subscriber that stays silent for
+ * longer than the lease, such as a crashed client, is dropped together with its watches.
+ */
+class Subscription {
+    private final ConcurrentHashMap<Long, Integer> watches = new ConcurrentHashMap<>(); // Watched pairs and their last reported distances
+    private volatile long lastActive;           // When the subscriber last called the server, in ms
+
+    Subscription() {
+        renew();
+    }
+
+    ConcurrentHashMap<Long, Integer> getWatches() {return watches;}
+
+    void renew() {
+        lastActive = System.currentTimeMillis();
+    }
+
+    boolean isExpired(long now, long leaseMillis) {
+        return now - lastActive > leaseMillis;
+    }
+}
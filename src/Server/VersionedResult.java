@@ -0,0 +1,28 @@
+package Server;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Results of a batch together with the graph versions observed around it.
+ * When both versions are equal no edge changed while the batch ran, so every
+ * query result in it is valid at that version.
+ */
+public class VersionedResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final List<Integer> results;
+    private final long startVersion;    // Graph version before the first operation ran
+    private final long endVersion;      // Graph version after the last operation ran
+
+    public VersionedResult(List<Integer> results, long startVersion, long endVersion) {
+        this.results = results;
+        this.startVersion = startVersion;
+        this.endVersion = endVersion;
+    }
+
+    public List<Integer> getResults() {return results;}
+
+    public long getStartVersion() {return startVersion;}
+
+    public long getEndVersion() {return endVersion;}
+}